@@ -0,0 +1,158 @@
+/*
+Copyright © 2008 FONTAINE Julie
+Copyright © 2008 ABATI Mathieu
+
+This file is part of Universe Viewer.
+
+Universe Viewer is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 2 of the License, or
+(at your option) any later version.
+
+Universe Viewer is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Universe Viewer; if not, write to the Free Software
+Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+/**
+ * @author FONTAINE Julie
+ * @author ABATI Mathieu
+ */
+
+/**
+ * This class is used to compute integrals, with an adaptive Gauss-Kronrod rule.
+ * Each interval is evaluated with the 15 points Kronrod rule, the difference with the
+ * embedded 7 points Gauss rule is the error estimate. Intervals are split until the
+ * requested tolerance is reached, so smooth parts of the function take only a few points.
+ * Cosmological constants are copied at creation: an instance can be used by several threads.
+ */
+final class AdaptiveIntegral
+{
+    private static final int MAX_DEPTH = 30;
+
+    // Kronrod nodes (positive half, the last one is the center)
+    private static final double[] XGK = {
+        0.991455371120812639206854697526329, 0.949107912342758524526189684047851,
+        0.864864423359769072789712788640926, 0.741531185599394439863864773280788,
+        0.586087235467691130294144845693013, 0.405845151377397166906606412076961,
+        0.207784955007898467600689403773245, 0.000000000000000000000000000000000 };
+    // Kronrod weights
+    private static final double[] WGK = {
+        0.022935322010529224963732008058970, 0.063092092629978553290700663189204,
+        0.104790010322250183839876322541518, 0.140653259715525918745189590510238,
+        0.169004726639267902826583426598550, 0.190350578064785409913256402421014,
+        0.204432940075298892414161999234649, 0.209482141084727828012999174891714 };
+    // Gauss weights (nodes are the odd Kronrod nodes, the last one is the center)
+    private static final double[] WG = {
+        0.129484966168869693270611432679082, 0.279705391489276667901467771423780,
+        0.381830050505118944950369775488975, 0.417959183673469387755102040816327 };
+
+    // cosmological constants
+    private final double lambda, omega, kappa, alpha;
+
+    /**
+     * Create an integrator for these cosmological constants
+     */
+    public AdaptiveIntegral(double lambda, double omega, double kappa, double alpha)
+    {
+        this.lambda = lambda;
+        this.omega = omega;
+        this.kappa = kappa;
+        this.alpha = alpha;
+    }
+
+    public double poly(double a)
+    {
+        double a2 = a * a;
+        return lambda * a2 * a2 - kappa * a2 + omega * a + alpha;
+    }
+
+    /**
+     * This method contains the function to integrate
+     * @param x
+     * @return
+     */
+    public double funcToIntegrate(double x)
+    {
+        return 1.0d / Math.sqrt(poly(x));
+    }
+
+    /**
+     * Result of an integration: value and error estimate
+     */
+    public static final class Result
+    {
+        private double value;
+        private double error;
+
+        public double getValue() { return value; }
+        public double getError() { return error; }
+    }
+
+    /**
+     * This method compute an integral
+     * @param limitA interval min
+     * @param limitB interval max
+     * @param tolerance absolute error wanted
+     * @return integral value and achieved error estimate
+     */
+    public Result integrate(double limitA, double limitB, double tolerance)
+    {
+        Result r = new Result();
+        if(limitA != limitB)
+            segment(limitA, limitB, tolerance / Math.abs(limitB - limitA), 0, r);
+        return r;
+    }
+
+    /**
+     * This method compute an integral
+     * @param limitA interval min
+     * @param limitB interval max
+     * @param tolerance absolute error wanted
+     * @return integral value
+     */
+    public double value(double limitA, double limitB, double tolerance)
+    {
+        return integrate(limitA, limitB, tolerance).getValue();
+    }
+
+    /**
+     * Integrate an interval, split it in two if the error is too large
+     * @param tolerancePerUnit tolerance of the whole integral, divided by its width
+     */
+    private void segment(double a, double b, double tolerancePerUnit, int depth, Result r)
+    {
+        double center = 0.5d * (a + b);
+        double halfLength = 0.5d * (b - a);
+
+        double fc = funcToIntegrate(center);
+        double resG = fc * WG[3];
+        double resK = fc * WGK[7];
+        for(int j=0; j<7; j++)
+        {
+            double abscissa = halfLength * XGK[j];
+            double sum = funcToIntegrate(center - abscissa) + funcToIntegrate(center + abscissa);
+            resK += WGK[j] * sum;
+            if((j & 1) == 1)    // Gauss nodes
+                resG += WG[j >> 1] * sum;
+        }
+        double value = resK * halfLength;
+        double error = Math.abs((resK - resG) * halfLength);
+
+        if((error <= tolerancePerUnit * Math.abs(b - a)) || (depth >= MAX_DEPTH))
+        {
+            r.value += value;
+            r.error += error;
+        }
+        else
+        {
+            segment(a, center, tolerancePerUnit, depth + 1, r);
+            segment(center, b, tolerancePerUnit, depth + 1, r);
+        }
+    }
+}
@@ -0,0 +1,205 @@
+/*
+Copyright © 2008 FONTAINE Julie
+Copyright © 2008 ABATI Mathieu
+
+This file is part of Universe Viewer.
+
+Universe Viewer is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 2 of the License, or
+(at your option) any later version.
+
+Universe Viewer is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Universe Viewer; if not, write to the Free Software
+Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+/**
+ * @author FONTAINE Julie
+ * @author ABATI Mathieu
+ */
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+
+/**
+ * Batch mode: projects a catalog without the graphical interface.
+ * The catalog is read, quasars are computed with the given cosmological constants and
+ * view (as in the main window), and the projections are written to a text file, one
+ * line per quasar: "x y", followed by "X Y Z T" (4d position) if positions are requested.
+ * No AWT or OpenGL object is created (see Environment.initCalculations), so it runs
+ * on computers without display.
+ */
+final class BatchProjection
+{
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    static final String USAGE =
+            "Usage: java UniverseViewer --batch <catalog> <output> [options]\n"
+            + "  --lambda <l> --omega <o> --kappa <k> --alpha <a>   cosmological constants (default 1.2 0.2 0.40005 0.00005)\n"
+            + "  --ra1 <hours> --dec1 <degrees> --beta <hours>      projection angles (default 0)\n"
+            + "  --view <1-6>          view (default 1)\n"
+            + "  --comoving            comoving space (required if kappa = 0)\n"
+            + "  --precision           precise comoving distances (takes more time)\n"
+            + "  --positions           write 4d positions after projections\n"
+            + "  --threads <n>         calculation threads (default: number of processors)";
+
+    private BatchProjection() {}
+
+    /**
+     * Run the batch mode
+     * @param args arguments following "--batch" (see USAGE)
+     * @throws java.lang.IllegalArgumentException if arguments are incorrect (USAGE is then shown)
+     * @throws java.lang.Exception if the catalog cannot be read, or the output written
+     */
+    public static void run(String[] args) throws Exception
+    {
+        if(args.length < 2)
+            throw new IllegalArgumentException("Catalog and output files expected");
+        String catalog = args[0];
+        String output = args[1];
+
+        double[] consts = { 1.2d, 0.2d, 0.40005d, 0.00005d };
+        double ra1 = 0, dec1 = 0, beta = 0;
+        int view = 1, threads = ComputeEngine.getParallelism();
+        boolean comoving = false, precision = false, positions = false;
+
+        for(int i=2; i<args.length; i++)
+        {
+            String a = args[i];
+            if(a.equals("--comoving"))
+                comoving = true;
+            else if(a.equals("--precision"))
+                precision = true;
+            else if(a.equals("--positions"))
+                positions = true;
+            else
+            {
+                if(i + 1 >= args.length)
+                    throw new IllegalArgumentException("Value expected after " + a);
+                String v = args[++i];
+                if(a.equals("--lambda"))
+                    consts[0] = parse(a, v);
+                else if(a.equals("--omega"))
+                    consts[1] = parse(a, v);
+                else if(a.equals("--kappa"))
+                    consts[2] = parse(a, v);
+                else if(a.equals("--alpha"))
+                    consts[3] = parse(a, v);
+                else if(a.equals("--ra1"))
+                    ra1 = parse(a, v);
+                else if(a.equals("--dec1"))
+                    dec1 = parse(a, v);
+                else if(a.equals("--beta"))
+                    beta = parse(a, v);
+                else if(a.equals("--view"))
+                    view = parseInt(a, v, 1, 6);
+                else if(a.equals("--threads"))
+                    threads = parseInt(a, v, 1, Integer.MAX_VALUE);
+                else
+                    throw new IllegalArgumentException("Unknown option: " + a);
+            }
+        }
+
+        // same settings as the main window (comoving space first: kappa = 0 needs it),
+        // constants breaking a constraint are argument errors too
+        try
+        {
+            Environment.setParallelism(threads);
+            Environment.initCalculations();
+            Environment.comovingSpace(comoving);
+            Environment.setCosmoConsts(consts[0], consts[1], consts[2], consts[3]);
+            Environment.enablePrecision(precision);
+            Environment.setView(view);
+            Environment.setUserRa1(ra1);
+            Environment.setUserDec1(dec1);
+            Environment.setUserBeta(beta);
+        }
+        catch(Exception e)
+        {
+            throw new IllegalArgumentException(e.getMessage());
+        }
+
+        // same loading as the main window (see TaskExecutor.LoadTask)
+        CatalogLoader loader = new CatalogLoader(catalog);
+        QuasarCatalog q = loader.read();
+        System.out.println(q.size() + " quasars read (" + loader.getReadInfo() + ")");
+
+        long start = System.nanoTime();
+        ComputeEngine.compute(q, ComputeEngine.STAGE_ALL);
+        System.out.println(q.size() + " quasars computed in " + (System.nanoTime() - start) / 1000000L + " ms");
+        loader.show(q);
+
+        start = System.nanoTime();
+        write(q, output, positions);
+        System.out.println(q.size() + " quasars written in " + (System.nanoTime() - start) / 1000000L + " ms");
+    }
+
+    private static double parse(String option, String value)
+    {
+        try
+        {
+            return Double.parseDouble(value);
+        }
+        catch(NumberFormatException e)
+        {
+            throw new IllegalArgumentException("Incorrect value for " + option + ": " + value);
+        }
+    }
+
+    private static int parseInt(String option, String value, int min, int max)
+    {
+        int i;
+        try
+        {
+            i = Integer.parseInt(value);
+        }
+        catch(NumberFormatException e)
+        {
+            throw new IllegalArgumentException("Incorrect value for " + option + ": " + value);
+        }
+        if((i < min) || (i > max))
+            throw new IllegalArgumentException("Incorrect value for " + option + ": " + value);
+        return i;
+    }
+
+    /**
+     * Write projections (and positions) of all quasars
+     * @param q computed catalog
+     * @param output file name
+     * @param positions write 4d positions too
+     */
+    private static void write(QuasarCatalog q, String output, boolean positions) throws IOException
+    {
+        BufferedWriter out = new BufferedWriter(new FileWriter(output), BUFFER_SIZE);
+        try
+        {
+            double[] px = q.getProjXColumn();
+            double[] py = q.getProjYColumn();
+            double[] x = q.getPosXColumn();
+            double[] y = q.getPosYColumn();
+            double[] z = q.getPosZColumn();
+            double[] t = q.getPosTColumn();
+            StringBuilder line = new StringBuilder(128);
+            for(int i=0; i<q.size(); i++)
+            {
+                line.setLength(0);
+                line.append(px[i]).append(' ').append(py[i]);
+                if(positions)
+                    line.append(' ').append(x[i]).append(' ').append(y[i]).append(' ').append(z[i]).append(' ').append(t[i]);
+                line.append('\n');
+                out.append(line);
+            }
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,366 @@
+/*
+Copyright © 2008 FONTAINE Julie
+Copyright © 2008 ABATI Mathieu
+
+This file is part of Universe Viewer.
+
+Universe Viewer is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 2 of the License, or
+(at your option) any later version.
+
+Universe Viewer is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Universe Viewer; if not, write to the Free Software
+Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+/**
+ * @author FONTAINE Julie
+ * @author ABATI Mathieu
+ */
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.BitSet;
+import java.util.zip.CRC32;
+
+/**
+ * Binary quasars catalog file.
+ * All values are little-endian. The file starts with a header:
+ * <pre>
+ *   0  magic "UVQC"
+ *   4  int version
+ *   8  int flags (FLAG_FLOAT: columns stored as floats, else as doubles)
+ *  12  int columns count
+ *  16  long rows count
+ *  24  columns descriptions, 40 bytes each:
+ *        int column id, int (unused), double min, double max,
+ *        long block offset, long block CRC32
+ *  ..  int CRC32 of the header bytes above, padding to 8 bytes
+ * </pre>
+ * followed by one block per column, each block holding the values of all rows.
+ * Blocks are read through memory mappings, with bulk gets into the catalog columns.
+ */
+final class BinaryCatalog
+{
+    public static final String EXTENSION = ".uvc";
+
+    private static final byte[] MAGIC = { 'U', 'V', 'Q', 'C' };
+    private static final int VERSION = 1;
+    public static final int FLAG_FLOAT = 1;
+
+    // columns
+    public static final int COLUMN_ASCENSION = 0;
+    public static final int COLUMN_DECLINATION = 1;
+    public static final int COLUMN_REDSHIFT = 2;
+    public static final int COLUMN_MAGNITUDE = 3;
+    private static final int COLUMNS = 4;
+
+    private static final int COLUMNS_OFFSET = 24;
+    private static final int COLUMN_DESC_SIZE = 40;
+    private static final int HEADER_SIZE = COLUMNS_OFFSET + COLUMNS * COLUMN_DESC_SIZE + 8;
+
+    private static final int BUFFER_SIZE = 1 << 20;     // write buffer
+    private static final int MAP_SIZE = 1 << 28;        // largest mapping used to read a block
+
+    private BinaryCatalog() {}
+
+    /**
+     * Is this file a binary catalog? (only the magic number is checked)
+     * @param filename
+     * @return true if the file starts with the binary catalog magic number
+     */
+    public static boolean isBinaryCatalog(String filename)
+    {
+        try
+        {
+            RandomAccessFile file = new RandomAccessFile(filename, "r");
+            try
+            {
+                if(file.length() < HEADER_SIZE)
+                    return false;
+                byte[] magic = new byte[MAGIC.length];
+                file.readFully(magic);
+                for(int i=0; i<MAGIC.length; i++)
+                    if(magic[i] != MAGIC[i])
+                        return false;
+                return true;
+            }
+            finally
+            {
+                file.close();
+            }
+        }
+        catch(IOException e)
+        {
+            return false;
+        }
+    }
+
+    private static double[] column(QuasarCatalog q, int id)
+    {
+        switch(id)
+        {
+            case COLUMN_ASCENSION: return q.getAscensionColumn();
+            case COLUMN_DECLINATION: return q.getDeclinationColumn();
+            case COLUMN_REDSHIFT: return q.getRedshiftColumn();
+            default: return q.getMagnitudeColumn();
+        }
+    }
+
+    /**
+     * Write quasars in a binary catalog file
+     * @param q quasars catalog
+     * @param rows quasars to write (all quasars if null)
+     * @param filename
+     * @param floats store values as floats instead of doubles
+     * @throws java.io.IOException
+     */
+    public static void write(QuasarCatalog q, BitSet rows, String filename, boolean floats) throws IOException
+    {
+        long count = (rows == null) ? q.size() : rows.cardinality();
+        int valueSize = floats ? 4 : 8;
+        long blockSize = align(count * valueSize);
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.put(MAGIC);
+        header.putInt(VERSION);
+        header.putInt(floats ? FLAG_FLOAT : 0);
+        header.putInt(COLUMNS);
+        header.putLong(count);
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        RandomAccessFile file = new RandomAccessFile(filename, "rw");
+        try
+        {
+            file.setLength(0);
+            FileChannel channel = file.getChannel();
+            long offset = HEADER_SIZE;
+            for(int c=0; c<COLUMNS; c++)
+            {
+                double[] values = column(q, c);
+                double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+                CRC32 crc = new CRC32();
+                long position = offset;
+                int i = (rows == null) ? 0 : rows.nextSetBit(0);
+                for(long k=0; k<count; k++)
+                {
+                    double v = floats ? (float)values[i] : values[i];
+                    min = Math.min(min, v);
+                    max = Math.max(max, v);
+                    if(floats)
+                        buffer.putFloat((float)v);
+                    else
+                        buffer.putDouble(v);
+                    if(buffer.remaining() < 8)
+                        position += flush(channel, buffer, position, crc);
+                    i = (rows == null) ? i + 1 : rows.nextSetBit(i + 1);
+                }
+                while(((position - offset + buffer.position()) & 7) != 0)   // padding
+                    buffer.put((byte)0);
+                flush(channel, buffer, position, crc);
+
+                header.putInt(c);
+                header.putInt(0);
+                header.putDouble(min);
+                header.putDouble(max);
+                header.putLong(offset);
+                header.putLong(crc.getValue());
+                offset += blockSize;
+            }
+
+            CRC32 headerCrc = new CRC32();
+            headerCrc.update(header.array(), 0, header.position());
+            header.putInt((int)headerCrc.getValue());
+            header.putInt(0);
+            header.flip();
+            while(header.hasRemaining())
+                channel.write(header, header.position());
+        }
+        finally
+        {
+            file.close();
+        }
+    }
+
+    private static long align(long n)
+    {
+        return (n + 7) & ~7L;
+    }
+
+    private static int flush(FileChannel channel, ByteBuffer buffer, long position, CRC32 crc) throws IOException
+    {
+        buffer.flip();
+        int n = buffer.remaining();
+        crc.update(buffer.duplicate());
+        while(buffer.hasRemaining())
+            channel.write(buffer, position + buffer.position());
+        buffer.clear();
+        return n;
+    }
+
+    /**
+     * Read a binary catalog file
+     * @param filename
+     * @param verify verify the columns checksums (the header checksum is always verified)
+     * @return quasars catalog
+     * @throws java.io.IOException if the file cannot be read, or is not a valid binary catalog
+     */
+    public static QuasarCatalog read(String filename, boolean verify) throws IOException
+    {
+        RandomAccessFile file = new RandomAccessFile(filename, "r");
+        try
+        {
+            FileChannel channel = file.getChannel();
+            if(channel.size() < HEADER_SIZE)
+                throw new IOException("Not a binary catalog: " + filename);
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            for(int i=0; i<MAGIC.length; i++)
+                if(header.get(i) != MAGIC[i])
+                    throw new IOException("Not a binary catalog: " + filename);
+            int version = header.getInt(4);
+            if(version != VERSION)
+                throw new IOException("Unsupported binary catalog version: " + version);
+            int end = COLUMNS_OFFSET + header.getInt(12) * COLUMN_DESC_SIZE;
+            if((header.getInt(12) != COLUMNS) || (header.getInt(end) != crc(header, end)))
+                throw new IOException("Corrupted binary catalog header: " + filename);
+            boolean floats = (header.getInt(8) & FLAG_FLOAT) != 0;
+            long rows = header.getLong(16);
+            if((rows < 0) || (rows > Integer.MAX_VALUE - 8))
+                throw new IOException("Too many quasars in binary catalog: " + rows);
+
+            QuasarCatalog q = new QuasarCatalog((int)rows);
+            q.resize((int)rows);
+            int valueSize = floats ? 4 : 8;
+            for(int c=0; c<COLUMNS; c++)
+            {
+                int desc = COLUMNS_OFFSET + c * COLUMN_DESC_SIZE;
+                int id = header.getInt(desc);
+                if((id < 0) || (id >= COLUMNS))
+                    throw new IOException("Unknown column in binary catalog: " + id);
+                double[] values = column(q, id);
+                long offset = header.getLong(desc + 24);
+                if(offset + rows * valueSize > channel.size())
+                    throw new IOException("Truncated binary catalog: " + filename);
+
+                CRC32 crc = new CRC32();
+                int step = MAP_SIZE / valueSize;
+                for(int done=0; done<rows; done+=step)
+                {
+                    int n = (int)Math.min(step, rows - done);
+                    MappedByteBuffer block = channel.map(FileChannel.MapMode.READ_ONLY,
+                            offset + (long)done * valueSize, (long)n * valueSize);
+                    block.order(ByteOrder.LITTLE_ENDIAN);
+                    if(floats)
+                    {
+                        FloatBuffer fb = block.asFloatBuffer();
+                        for(int k=0; k<n; k++)
+                            values[done + k] = fb.get(k);
+                    }
+                    else
+                        block.asDoubleBuffer().get(values, done, n);
+                    if(verify)
+                        crc.update(block);
+                }
+                if(verify)
+                {
+                    int padding = (int)(align(rows * valueSize) - rows * valueSize);
+                    crc.update(new byte[padding]);
+                    if(crc.getValue() != header.getLong(desc + 32))
+                        throw new IOException("Checksum error in binary catalog column " + id);
+                }
+            }
+            q.updateDirections(0, (int)rows);
+            return q;
+        }
+        finally
+        {
+            file.close();
+        }
+    }
+
+    private static int crc(ByteBuffer header, int length)
+    {
+        byte[] bytes = new byte[length];
+        for(int i=0; i<length; i++)
+            bytes[i] = header.get(i);
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        return (int)crc.getValue();
+    }
+
+    /**
+     * Read the min and max values of a column, from the header only
+     * @param filename
+     * @param column column id
+     * @return { min, max }
+     * @throws java.io.IOException
+     */
+    public static double[] getColumnRange(String filename, int column) throws IOException
+    {
+        RandomAccessFile file = new RandomAccessFile(filename, "r");
+        try
+        {
+            ByteBuffer header = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            for(int c=0; c<COLUMNS; c++)
+            {
+                int desc = COLUMNS_OFFSET + c * COLUMN_DESC_SIZE;
+                if(header.getInt(desc) == column)
+                    return new double[] { header.getDouble(desc + 8), header.getDouble(desc + 16) };
+            }
+            throw new IOException("No column " + column + " in binary catalog: " + filename);
+        }
+        finally
+        {
+            file.close();
+        }
+    }
+
+    /**
+     * Convert a text registry file into a binary catalog
+     * @param textFile registry file (see MappedCatalogReader)
+     * @param binaryFile
+     * @param floats store values as floats instead of doubles
+     * @return number of quasars converted
+     * @throws java.io.IOException
+     */
+    public static int convert(String textFile, String binaryFile, boolean floats) throws IOException
+    {
+        QuasarCatalog q = new MappedCatalogReader(textFile).read();
+        write(q, null, binaryFile, floats);
+        return q.size();
+    }
+
+    /**
+     * Command line converter: BinaryCatalog registry.txt catalog.uvc [-float]
+     * @param args
+     */
+    public static void main(String[] args)
+    {
+        if((args.length < 2) || ((args.length == 3) && !args[2].equals("-float")) || (args.length > 3))
+        {
+            System.err.println("Usage: BinaryCatalog <registry file> <binary catalog file> [-float]");
+            System.exit(1);
+        }
+        try
+        {
+            int n = convert(args[0], args[1], args.length == 3);
+            System.out.println(n + " quasars written in " + args[1]);
+        }
+        catch(IOException e)
+        {
+            System.err.println("Error while converting registry file! " + e.getMessage());
+            System.exit(1);
+        }
+    }
+}
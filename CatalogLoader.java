@@ -0,0 +1,128 @@
+/*
+Copyright © 2008 FONTAINE Julie
+Copyright © 2008 ABATI Mathieu
+
+This file is part of Universe Viewer.
+
+Universe Viewer is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 2 of the License, or
+(at your option) any later version.
+
+Universe Viewer is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Universe Viewer; if not, write to the Free Software
+Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+/**
+ * @author FONTAINE Julie
+ * @author ABATI Mathieu
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+
+/**
+ * Loads a catalog file, text registry (see MappedCatalogReader) or binary (see BinaryCatalog),
+ * and installs it in the environment. Used by the main window (see TaskExecutor.LoadTask)
+ * and by the batch mode.
+ */
+final class CatalogLoader
+{
+    private final String filename;
+    private volatile MappedCatalogReader reader;
+    private volatile boolean cancelled;
+    private double ascensionMax;
+
+    // statistics of the last read
+    private long bytesRead;
+    private long readTime;      // milliseconds
+    private double throughput;  // MB per second
+
+    public CatalogLoader(String filename) { this.filename = filename; }
+
+    /**
+     * Read the catalog, can be called outside the Swing event thread
+     * @return quasars read, not computed yet
+     * @throws java.io.IOException if the file cannot be read (InterruptedIOException if cancelled)
+     */
+    public QuasarCatalog read() throws IOException
+    {
+        QuasarCatalog quasars;
+        if(BinaryCatalog.isBinaryCatalog(filename))
+        {
+            long start = System.nanoTime();
+            quasars = BinaryCatalog.read(filename, true);
+            long time = System.nanoTime() - start;
+            bytesRead = new File(filename).length();
+            readTime = time / 1000000L;
+            throughput = (time == 0) ? 0 : (bytesRead / (1024.0d * 1024.0d)) / (time / 1e9);
+            ascensionMax = Double.NEGATIVE_INFINITY;
+            double[] ra = quasars.getAscensionColumn();
+            for(int i=0; i<quasars.size(); i++)
+                ascensionMax = Math.max(ascensionMax, ra[i]);
+        }
+        else
+        {
+            reader = new MappedCatalogReader(filename);
+            if(cancelled)
+                throw new InterruptedIOException("Reading cancelled");
+            quasars = reader.read();
+            ascensionMax = reader.getAscensionMax();
+            bytesRead = reader.getBytesRead();
+            readTime = reader.getReadTime();
+            throughput = reader.getThroughput();
+        }
+        return quasars;
+    }
+
+    /**
+     * Show a catalog read by this loader in place of the current one (selection is re-initialized)
+     * @param quasars catalog returned by read, with computed projections
+     */
+    public void show(QuasarCatalog quasars)
+    {
+        if(ascensionMax > Environment.getAscensionMax())
+            Environment.setAscensionMax(ascensionMax);
+        Quasar.setSelectedCount(0); // re-initializing selection
+        Environment.show(quasars);
+    }
+
+    /**
+     * Describe the last read: size, duration and throughput
+     * @return "<size> MB in <time> ms, <throughput> MB/s"
+     */
+    public String getReadInfo()
+    {
+        return round(bytesRead / (1024.0d * 1024.0d)) + " MB in " + readTime + " ms, " + round(throughput) + " MB/s";
+    }
+
+    private static double round(double x) { return Math.round(10 * x) / 10.0d; }
+
+    /**
+     * Get the reading progress
+     * @return progress in [0, 1], or a negative value if unknown
+     */
+    public double getProgress()
+    {
+        MappedCatalogReader r = reader;
+        return (r == null) ? -1 : r.getProgress();
+    }
+
+    /**
+     * Stop the current read (read then throws an InterruptedIOException)
+     */
+    public void cancel()
+    {
+        cancelled = true;
+        MappedCatalogReader r = reader;
+        if(r != null)
+            r.cancel();
+    }
+}
@@ -0,0 +1,160 @@
+/*
+Copyright © 2008 FONTAINE Julie
+Copyright © 2008 ABATI Mathieu
+
+This file is part of Universe Viewer.
+
+Universe Viewer is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 2 of the License, or
+(at your option) any later version.
+
+Universe Viewer is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Universe Viewer; if not, write to the Free Software
+Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+/**
+ * @author FONTAINE Julie
+ * @author ABATI Mathieu
+ */
+
+/**
+ * Precomputed comoving distances.
+ * The integral of funcToIntegrate from a to 1 is tabulated on a regular grid of the
+ * scale factor a, in [aMin, 1]. The comoving distance of a redshift z (a = 1/(1+z)) is
+ * then a cubic Hermite interpolation between two nodes: the derivative of the integral
+ * is known exactly (it is -funcToIntegrate(a)).
+ * A table only depends on the cosmological constants, it is immutable once built.
+ */
+final class ComovingDistTable
+{
+    private static final int MIN_NODES = 65;
+    private static final int MAX_NODES = (1 << 16) + 1;
+    private static final int SEGMENT_STEPS = 64;    // trapezoid steps used to integrate a segment
+
+    // cosmology used to build the table, and error bound requested
+    private final CosmologySnapshot cosmology;
+    private final double errorBound;
+
+    // grid
+    private final double aMin;
+    private final double step;
+    private final int nodes;
+    private final double[] dist;    // integral from node a to 1
+    private final double[] deriv;   // derivative of dist at node a
+
+    private final double maxError;  // max difference found with the trapezoid integral
+
+    private ComovingDistTable(CosmologySnapshot c, double aMin, int nodes)
+    {
+        this.cosmology = c;
+        this.errorBound = c.getDistanceErrorBound();
+        this.aMin = aMin;
+        this.nodes = nodes;
+        this.step = (1.0d - aMin) / (nodes - 1);
+        this.dist = new double[nodes];
+        this.deriv = new double[nodes];
+
+        // cumulative integral, from a = 1 downward
+        dist[nodes-1] = 0;
+        AdaptiveIntegral f = c.getIntegrator();
+        deriv[nodes-1] = -f.funcToIntegrate(1.0d);
+        for(int k=nodes-2; k>=0; k--)
+        {
+            double a = node(k);
+            dist[k] = dist[k+1] + trapezoid(f, a, node(k+1), SEGMENT_STEPS);
+            deriv[k] = -f.funcToIntegrate(a);
+        }
+
+        // checking the interpolation in the middle of each segment (same trapezoid step)
+        double err = 0;
+        for(int k=0; k<nodes-1; k++)
+        {
+            double mid = node(k) + step/2;
+            double ref = dist[k+1] + trapezoid(f, mid, node(k+1), SEGMENT_STEPS/2);
+            err = Math.max(err, Math.abs(interpolate(mid) - ref));
+        }
+        this.maxError = err;
+    }
+
+    /**
+     * Trapezoid integral of funcToIntegrate, with a fixed number of steps
+     */
+    private static double trapezoid(AdaptiveIntegral f, double limitA, double limitB, int steps)
+    {
+        double stepH = (limitB - limitA) / steps;
+        double val = 0;
+        for(int k=1; k<steps; k++)
+            val += f.funcToIntegrate(limitA + k*stepH);
+        val = val*stepH;
+        return ((stepH/2)*(f.funcToIntegrate(limitA) + f.funcToIntegrate(limitB)) + val);
+    }
+
+    /**
+     * Build a table for a cosmology.
+     * The number of nodes is doubled until the cosmology error bound (max difference allowed
+     * with the trapezoid integral) is verified, or until a maximum size.
+     * @param c cosmology snapshot
+     * @param aMin smallest scale factor in the table (1/(1+zMax))
+     * @return a new table
+     */
+    public static ComovingDistTable build(CosmologySnapshot c, double aMin)
+    {
+        ComovingDistTable t = new ComovingDistTable(c, aMin, MIN_NODES);
+        while((t.maxError > c.getDistanceErrorBound()) && (t.nodes < MAX_NODES))
+            t = new ComovingDistTable(c, aMin, 2*t.nodes - 1);
+        return t;
+    }
+
+    /**
+     * Is this table usable for this cosmology and this smallest scale factor?
+     * @return true if the table can be used
+     */
+    public boolean matches(CosmologySnapshot c, double a)
+    {
+        return (c.getLambda() == cosmology.getLambda()) && (c.getOmega() == cosmology.getOmega())
+            && (c.getKappa() == cosmology.getKappa()) && (c.getAlpha() == cosmology.getAlpha())
+            && (errorBound <= c.getDistanceErrorBound()) && (a >= aMin);
+    }
+
+    private double node(int k)
+    {
+        return (k == nodes-1) ? 1.0d : aMin + k*step;
+    }
+
+    private double interpolate(double a)
+    {
+        if(step == 0)   // all redshifts are 0 (aMin = 1): the table only holds a = 1
+            return 0;
+        int k = (int)((a - aMin) / step);
+        if(k > nodes-2)
+            k = nodes-2;
+        double t = (a - node(k)) / step;
+        double t2 = t*t;
+        double t3 = t2*t;
+        return (2*t3 - 3*t2 + 1) * dist[k] + (t3 - 2*t2 + t) * step * deriv[k]
+             + (-2*t3 + 3*t2) * dist[k+1] + (t3 - t2) * step * deriv[k+1];
+    }
+
+    /**
+     * Get the comoving distance of a redshift
+     * @param z redshift
+     * @return comoving distance
+     */
+    public double comovingDist(double z)
+    {
+        double a = 1.0d / (1.0d + z);
+        if((a < aMin) || (a > 1.0d))   // out of the table
+            return cosmology.comovingDist(z);
+        return interpolate(a);
+    }
+
+    public double getMaxError() { return maxError; }
+    public int getNodes() { return nodes; }
+}
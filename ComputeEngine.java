@@ -0,0 +1,438 @@
+/*
+Copyright © 2008 FONTAINE Julie
+Copyright © 2008 ABATI Mathieu
+
+This file is part of Universe Viewer.
+
+Universe Viewer is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 2 of the License, or
+(at your option) any later version.
+
+Universe Viewer is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Universe Viewer; if not, write to the Free Software
+Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+/**
+ * @author FONTAINE Julie
+ * @author ABATI Mathieu
+ */
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Parallel computation of quasars angular distances, positions and projections.
+ * The catalog is split into chunks computed on a ForkJoinPool. Inside a chunk,
+ * each quasar goes through all the requested stages at once.
+ */
+final class ComputeEngine
+{
+    // stages
+    public static final int STAGE_DIST = 1;   // angular distance
+    public static final int STAGE_POS = 2;    // 4d position
+    public static final int STAGE_PROJ = 4;   // 2d projection
+    public static final int STAGE_ALL = STAGE_DIST | STAGE_POS | STAGE_PROJ;
+    public static final int STAGE_ROTATE = 8; // projections on E2, E3 rotated after a Beta change (see neededStages)
+
+    // incremental rotations allowed before projections are computed again (rounding errors add up)
+    static final int MAX_ROTATIONS = 32;
+
+    // number of quasars computed by a single task
+    private static final int CHUNK_SIZE = 4096;
+
+    // pool created by the first calculation, and never replaced: tasks and readers may hold it
+    private static ForkJoinPool pool;
+    private static int parallelism = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Get the number of threads used by the calculations
+     * @return parallelism level
+     */
+    public static synchronized int getParallelism() { return parallelism; }
+
+    /**
+     * Set the number of threads used by the calculations, before the first calculation
+     * @param p parallelism level (at least 1)
+     * @throws java.lang.Exception if p is less than 1, or if calculations have already started
+     */
+    public static synchronized void setParallelism(int p) throws Exception
+    {
+        if(p < 1)
+            throw new Exception("Parallelism level must be at least 1");
+        if(p == parallelism)
+            return;
+        if(pool != null)
+            throw new Exception("Parallelism level must be set before the first calculation");
+        parallelism = p;
+    }
+
+    /**
+     * Get the pool running the calculations (also used to parse registry files)
+     * @return pool, created on first call
+     */
+    static synchronized ForkJoinPool getPool()
+    {
+        if(pool == null)
+            pool = new ForkJoinPool(parallelism);
+        return pool;
+    }
+
+    /**
+     * Compute the requested stages for all quasars of a catalog, using current Environment values
+     * @param q quasars catalog
+     * @param stages STAGE_DIST, STAGE_POS and/or STAGE_PROJ
+     */
+    public static void compute(QuasarCatalog q, int stages)
+    {
+        compute(q, stages, null);
+    }
+
+    /**
+     * Compute the requested stages for all quasars of a catalog, using current Environment values.
+     * Chunks not started yet are skipped once the task is cancelled (values are then incomplete).
+     * @param q quasars catalog
+     * @param stages STAGE_DIST, STAGE_POS and/or STAGE_PROJ
+     * @param task background task running the calculation (null if none)
+     */
+    public static void compute(QuasarCatalog q, int stages, TaskExecutor.Task task)
+    {
+        compute(q, stages, Environment.getCosmology(), Environment.getViewSnapshot(), task);
+    }
+
+    /**
+     * Compute the requested stages for all quasars of a catalog, using snapshots of the Environment values.
+     * Chunks not started yet are skipped once the task is cancelled (values are then incomplete).
+     * @param q quasars catalog
+     * @param stages STAGE_DIST, STAGE_POS and/or STAGE_PROJ
+     * @param c cosmological constants and calculations settings
+     * @param v view and projection vectors
+     * @param task background task running the calculation (null if none)
+     */
+    public static void compute(QuasarCatalog q, int stages, CosmologySnapshot c, ViewSnapshot v, TaskExecutor.Task task)
+    {
+        if(q == null)
+            return;
+        boolean view = (stages & STAGE_PROJ) != 0;
+        stages = neededStages(q, stages, v);
+        ViewSnapshot previous = q.getComputedView();
+        ViewSnapshot computedView = previous;
+        if(view)
+            computedView = v;
+        else if((stages & STAGE_POS) != 0)
+            computedView = null;    // projections do not match the new positions any more
+        q.setComputedWith(((stages & (STAGE_DIST | STAGE_POS)) != 0) ? c : q.getComputedCosmology(), computedView);
+        if(view)
+            q.setProjectionAxes(v.getAxisX(), v.getAxisY());
+        if((q.size() == 0) || (stages == 0))
+            return;
+        Kernel k = new Kernel(q, stages, c, v, previous);
+        getPool().invoke(new ChunkTask(k, q, 0, q.size(), task));
+        if((stages & STAGE_PROJ) != 0)
+            q.setProjectionRotations(0);
+        else if((stages & STAGE_ROTATE) != 0)
+            q.setRotatedProjections(k.rotated2, k.rotated3);
+        if((stages & (STAGE_PROJ | STAGE_ROTATE)) != 0)
+            q.invalidateProjectionIndex();
+    }
+
+    /**
+     * Get the stages really needed to compute a catalog: all views are computed at once,
+     * so projections are not computed again if only the view number has changed
+     * (the view then only chooses two of the projections, see QuasarCatalog.setProjectionAxes).
+     * If only Beta has changed, E2 and E3 have rotated by the Beta difference in the plane
+     * orthogonal to E1: projections on E2 and E3 are rotated the same way (STAGE_ROTATE),
+     * projections on E1 do not change.
+     * @param q quasars catalog
+     * @param stages stages requested
+     * @param v view and projection vectors
+     * @return stages to compute
+     */
+    public static int neededStages(QuasarCatalog q, int stages, ViewSnapshot v)
+    {
+        if(stages != STAGE_PROJ)
+            return stages;
+        ViewSnapshot computed = q.getComputedView();
+        if(v.hasSameVectors(computed))
+            return 0;
+        if(v.hasSameAxis(computed) && (q.getProjectionRotations() < MAX_ROTATIONS))
+            return STAGE_ROTATE;
+        return stages;
+    }
+
+    /**
+     * Compute comoving distances of all quasars, walking the catalog in redshift order.
+     * The integral from a = 1 is only computed on the gaps between two consecutive redshifts
+     * (in parallel), the distance of a quasar is then the running sum of the gaps.
+     * @param q quasars catalog
+     * @param integrator
+     * @param tolerance absolute error wanted on the largest distance
+     * @return comoving distances, by quasar index
+     */
+    private static double[] sortedComovingDist(QuasarCatalog q, AdaptiveIntegral integrator, double tolerance)
+    {
+        int[] order = q.getRedshiftOrder();
+        double[] gaps = new double[order.length];
+        getPool().invoke(new GapTask(q.getSortedRedshift(), gaps, integrator, tolerance, 0, order.length));
+
+        double[] cd = new double[q.size()];
+        double sum = 0;
+        for(int k=0; k<order.length; k++)
+        {
+            sum += gaps[k];
+            cd[order[k]] = sum;
+        }
+        return cd;
+    }
+
+    /**
+     * Integrate the gaps between consecutive redshifts of a sorted range
+     */
+    private static final class GapTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+        private final double[] redshift;    // sorted
+        private final double[] gaps;
+        private final AdaptiveIntegral integrator;
+        private final double tolerance;
+        private final int from, to;
+
+        GapTask(double[] redshift, double[] gaps, AdaptiveIntegral integrator, double tolerance, int from, int to)
+        {
+            this.redshift = redshift;
+            this.gaps = gaps;
+            this.integrator = integrator;
+            this.tolerance = tolerance;
+            this.from = from;
+            this.to = to;
+        }
+
+        protected void compute()
+        {
+            if(to - from <= CHUNK_SIZE)
+            {
+                double aPrev = (from == 0) ? 1.0d : 1.0d / (1.0d + redshift[from-1]);
+                for(int k=from; k<to; k++)
+                {
+                    double a = 1.0d / (1.0d + redshift[k]);
+                    // tolerance shared in proportion of the gap width, so that the sum stays within tolerance
+                    gaps[k] = integrator.value(a, aPrev, tolerance * Math.abs(aPrev - a));
+                    aPrev = a;
+                }
+            }
+            else
+            {
+                int mid = (from + to) >>> 1;
+                invokeAll(new GapTask(redshift, gaps, integrator, tolerance, from, mid),
+                          new GapTask(redshift, gaps, integrator, tolerance, mid, to));
+            }
+        }
+    }
+
+    /**
+     * Recursively split the catalog rows until chunks are small enough
+     */
+    private static final class ChunkTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+        private final Kernel kernel;
+        private final QuasarCatalog quasars;
+        private final int from, to;
+        private final TaskExecutor.Task task;
+
+        ChunkTask(Kernel k, QuasarCatalog q, int from, int to, TaskExecutor.Task task)
+        {
+            this.kernel = k;
+            this.quasars = q;
+            this.from = from;
+            this.to = to;
+            this.task = task;
+        }
+
+        protected void compute()
+        {
+            if((task != null) && task.isCancelled())
+                return;
+            if(to - from <= CHUNK_SIZE)
+                kernel.run(quasars, from, to);
+            else
+            {
+                int mid = (from + to) >>> 1;
+                invokeAll(new ChunkTask(kernel, quasars, from, mid, task), new ChunkTask(kernel, quasars, mid, to, task));
+            }
+        }
+    }
+
+    /**
+     * Calculations for a range of quasars.
+     * Snapshots values are copied at creation, so all chunks use the same ones.
+     */
+    private static final class Kernel
+    {
+        private final boolean dist, pos, proj, rotate;
+        private final double kappa;
+        private final double sqrtKappa;     // sqrt(|kappa|)
+        private final double scale;         // 1/sqrt(|kappa|) in comoving space, else 1
+        private final boolean comovingSpace;
+        private final double[] e1, e2, e3;  // projection vectors { x, y, z, t }
+        private final ProjectionKernel projection;
+        private final double cosDelta, sinDelta;    // Beta rotation
+        private final double[] rotated2, rotated3;  // rotated projections on E2, E3 (null if no rotation)
+        private final ComovingDistTable table;  // null if comoving distances are not interpolated
+        private final double[] sorted;          // comoving distances computed in redshift order, null if not
+        private final AdaptiveIntegral integrator;
+        private final double tolerance;
+
+        /**
+         * @param previous view used to compute the current projections (needed by STAGE_ROTATE only)
+         */
+        Kernel(QuasarCatalog q, int stages, CosmologySnapshot c, ViewSnapshot v, ViewSnapshot previous)
+        {
+            kappa = c.getKappa();
+            comovingSpace = c.isComovingSpace();
+            sqrtKappa = Math.sqrt(Math.abs(kappa));
+            scale = (comovingSpace && (kappa != 0)) ? 1/sqrtKappa : 1;
+
+            // angular distance is inexistant for kappa = 0
+            dist = ((stages & STAGE_DIST) != 0) && (kappa != 0);
+            pos = (stages & STAGE_POS) != 0;
+            proj = (stages & STAGE_PROJ) != 0;
+            rotate = !proj && ((stages & STAGE_ROTATE) != 0);
+
+            integrator = c.getIntegrator();
+            tolerance = c.getIntegrationTolerance();
+
+            boolean distNeeded = dist || (pos && (kappa == 0));
+            int mode = c.getDistanceMode();
+            if(distNeeded && (mode == Environment.DISTANCE_TABLE))
+                table = Environment.getComovingDistTable(q, c);
+            else
+                table = null;
+            if(distNeeded && (mode == Environment.DISTANCE_SORTED))
+                sorted = sortedComovingDist(q, integrator, tolerance);
+            else
+                sorted = null;
+
+            e1 = new double[] { v.getE(1, 0), v.getE(1, 1), v.getE(1, 2), v.getE(1, 3) };
+            e2 = new double[] { v.getE(2, 0), v.getE(2, 1), v.getE(2, 2), v.getE(2, 3) };
+            e3 = new double[] { v.getE(3, 0), v.getE(3, 1), v.getE(3, 2), v.getE(3, 3) };
+            projection = ProjectionKernel.get();
+
+            // P2' = cos(delta).P2 + sin(delta).P3, P3' = -sin(delta).P2 + cos(delta).P3
+            double delta = rotate ? v.getBeta() - previous.getBeta() : 0;
+            cosDelta = Math.cos(delta);
+            sinDelta = Math.sin(delta);
+            // rotated in place, unless the current projections are shared with another catalog (maybe shown)
+            if(!rotate)
+            {
+                rotated2 = null;
+                rotated3 = null;
+            }
+            else if(q.areProjectionsShared())
+            {
+                rotated2 = new double[q.getProjColumn(2).length];
+                rotated3 = new double[q.getProjColumn(3).length];
+            }
+            else
+            {
+                rotated2 = q.getProjColumn(2);
+                rotated3 = q.getProjColumn(3);
+            }
+        }
+
+        private double comovingDist(int i, double z)
+        {
+            if(sorted != null)
+                return sorted[i];
+            else if(table != null)
+                return table.comovingDist(z);
+            else
+                return integrator.value(1.0d / (1.0d + z), 1.0d, tolerance);
+        }
+
+        /**
+         * Compute a chunk of quasars, one stage after the other while the chunk is still in cache:
+         * angular distances, radial terms of positions (the only transcendental functions, once
+         * per quasar), positions (radial terms times the catalog direction vectors), and projections
+         * (see ProjectionKernel). Nothing is allocated.
+         */
+        void run(QuasarCatalog q, int from, int to)
+        {
+            double[] z = q.getRedshiftColumn();
+            double[] ad = q.getAngularDistColumn();
+            double[] x = q.getPosXColumn();
+            double[] y = q.getPosYColumn();
+            double[] zz = q.getPosZColumn();
+            double[] t = q.getPosTColumn();
+            double[] p1 = q.getProjColumn(1);
+            double[] p2 = q.getProjColumn(2);
+            double[] p3 = q.getProjColumn(3);
+
+            if(dist)
+            {
+                for(int i=from; i<to; i++)
+                    ad[i] = sqrtKappa * comovingDist(i, z[i]);
+            }
+
+            if(pos)
+            {
+                // radial and time components, radial one kept in x until directions are applied
+                if(kappa < 0.0d)
+                {
+                    for(int i=from; i<to; i++)
+                    {
+                        x[i] = scale * Math.sinh(ad[i]);
+                        t[i] = scale * Math.cosh(ad[i]);
+                    }
+                }
+                else if(kappa > 0.0d)
+                {
+                    for(int i=from; i<to; i++)
+                    {
+                        x[i] = scale * Math.sin(ad[i]);
+                        t[i] = scale * Math.cos(ad[i]);
+                    }
+                }
+                else if(comovingSpace) // kappa = 0
+                {
+                    for(int i=from; i<to; i++)
+                    {
+                        x[i] = comovingDist(i, z[i]);
+                        t[i] = 0;
+                    }
+                }
+                else    // kappa = 0 is only allowed in comoving space
+                    return;
+
+                double[] dx = q.getDirXColumn();
+                double[] dy = q.getDirYColumn();
+                double[] dz = q.getDirZColumn();
+                for(int i=from; i<to; i++)
+                {
+                    double r = x[i];
+                    x[i] = r * dx[i];
+                    y[i] = r * dy[i];
+                    zz[i] = r * dz[i];
+                }
+            }
+
+            if(proj)
+                projection.project(x, y, zz, t, e1, e2, e3, p1, p2, p3, from, to);
+            else if(rotate)
+            {
+                for(int i=from; i<to; i++)
+                {
+                    double a = p2[i], b = p3[i];
+                    rotated2[i] = cosDelta * a + sinDelta * b;
+                    rotated3[i] = cosDelta * b - sinDelta * a;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,115 @@
+/*
+Copyright © 2008 FONTAINE Julie
+Copyright © 2008 ABATI Mathieu
+
+This file is part of Universe Viewer.
+
+Universe Viewer is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 2 of the License, or
+(at your option) any later version.
+
+Universe Viewer is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Universe Viewer; if not, write to the Free Software
+Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+/**
+ * @author FONTAINE Julie
+ * @author ABATI Mathieu
+ */
+
+/**
+ * Immutable state of the cosmological model and of the calculations settings.
+ * Environment publishes a new snapshot each time a value changes, so a calculation
+ * started with a snapshot uses consistent values until its end, without locks.
+ */
+final class CosmologySnapshot
+{
+    // cosmological constants
+    private final double lambda;
+    private final double omega;
+    private final double kappa;
+    private final double alpha;
+    private final boolean comovingSpace;
+
+    // comoving distances calculation
+    private final AdaptiveIntegral integrator;
+    private final double integrationTolerance;
+    private final int distanceMode;
+    private final double distanceErrorBound;
+
+    /**
+     * Create a snapshot (values are not checked, see Environment setters)
+     */
+    CosmologySnapshot(double lambda, double omega, double kappa, double alpha, boolean comovingSpace,
+            double integrationTolerance, int distanceMode, double distanceErrorBound)
+    {
+        this.lambda = lambda;
+        this.omega = omega;
+        this.kappa = kappa;
+        this.alpha = alpha;
+        this.comovingSpace = comovingSpace;
+        this.integrator = new AdaptiveIntegral(lambda, omega, kappa, alpha);
+        this.integrationTolerance = integrationTolerance;
+        this.distanceMode = distanceMode;
+        this.distanceErrorBound = distanceErrorBound;
+    }
+
+    public double getLambda() { return lambda; }
+    public double getOmega() { return omega; }
+    public double getKappa() { return kappa; }
+    public double getAlpha() { return alpha; }
+    public boolean isComovingSpace() { return comovingSpace; }
+
+    /**
+     * Get the integrator for these cosmological constants
+     * @return comoving distances integrator
+     */
+    public AdaptiveIntegral getIntegrator() { return integrator; }
+    public double getIntegrationTolerance() { return integrationTolerance; }
+    public int getDistanceMode() { return distanceMode; }
+    public double getDistanceErrorBound() { return distanceErrorBound; }
+
+    // copies with one value changed
+
+    public CosmologySnapshot withConstants(double l, double o, double k, double a)
+    {
+        return new CosmologySnapshot(l, o, k, a, comovingSpace, integrationTolerance, distanceMode, distanceErrorBound);
+    }
+
+    public CosmologySnapshot withComovingSpace(boolean com)
+    {
+        return new CosmologySnapshot(lambda, omega, kappa, alpha, com, integrationTolerance, distanceMode, distanceErrorBound);
+    }
+
+    public CosmologySnapshot withIntegrationTolerance(double tol)
+    {
+        return new CosmologySnapshot(lambda, omega, kappa, alpha, comovingSpace, tol, distanceMode, distanceErrorBound);
+    }
+
+    public CosmologySnapshot withDistanceMode(int m)
+    {
+        return new CosmologySnapshot(lambda, omega, kappa, alpha, comovingSpace, integrationTolerance, m, distanceErrorBound);
+    }
+
+    public CosmologySnapshot withDistanceErrorBound(double e)
+    {
+        return new CosmologySnapshot(lambda, omega, kappa, alpha, comovingSpace, integrationTolerance, distanceMode, e);
+    }
+
+    /**
+     * Comoving distance of a redshift, integrated with the snapshot tolerance
+     * @param z redshift
+     * @return comoving distance
+     */
+    public double comovingDist(double z)
+    {
+        return integrator.value(1.0d / (1.0d + z), 1.0d, integrationTolerance);
+    }
+}
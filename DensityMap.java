@@ -0,0 +1,239 @@
+/*
+Copyright © 2008 FONTAINE Julie
+Copyright © 2008 ABATI Mathieu
+
+This file is part of Universe Viewer.
+
+Universe Viewer is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 2 of the License, or
+(at your option) any later version.
+
+Universe Viewer is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Universe Viewer; if not, write to the Free Software
+Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+/**
+ * @author FONTAINE Julie
+ * @author ABATI Mathieu
+ */
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * 2D histogram of points (projected positions, or ascension and declination), shown
+ * as a single texture instead of drawing each point.
+ * Points are binned once, in parallel; the selected points of each cell are counted
+ * apart, and only updated for the points whose selection has changed.
+ */
+final class DensityMap
+{
+    public static final int DEFAULT_SIZE = 512;     // cells per axis
+
+    // colour maps (see getColorMap)
+    public static final int HEAT_COLORS = 0;
+    public static final int GRAY_COLORS = 1;
+
+    private final int size;
+    private final double minX, maxX, minY, maxY;
+    private final int[] cellOf;     // cell of each point, -1 for invalid coordinates
+    private final int[] counts;     // points of each cell
+    private final int[] selectedCounts; // selected points of each cell
+    private final int maxCount;
+    private final BitSet counted = new BitSet();    // selection counted in selectedCounts
+    private long countedStamp = -1;                 // and its stamp (see QuasarCatalog.getSelectionStamp)
+
+    /**
+     * Bin n points, in parallel (see ComputeEngine.getPool)
+     * @param x points X coordinates
+     * @param y points Y coordinates
+     * @param n points count
+     * @param size cells per axis
+     */
+    public DensityMap(final double[] x, final double[] y, final int n, int size)
+    {
+        this.size = size;
+
+        // bounding box (points with invalid coordinates are ignored)
+        double x0 = Double.POSITIVE_INFINITY, x1 = Double.NEGATIVE_INFINITY;
+        double y0 = Double.POSITIVE_INFINITY, y1 = Double.NEGATIVE_INFINITY;
+        for(int i=0; i<n; i++)
+        {
+            if(isValid(x[i], y[i]))
+            {
+                x0 = Math.min(x0, x[i]);
+                x1 = Math.max(x1, x[i]);
+                y0 = Math.min(y0, y[i]);
+                y1 = Math.max(y1, y[i]);
+            }
+        }
+        if(x0 > x1)
+        {
+            x0 = x1 = y0 = y1 = 0;
+        }
+        minX = x0;
+        minY = y0;
+        maxX = Math.max(x1, x0 + Double.MIN_NORMAL);
+        maxY = Math.max(y1, y0 + Double.MIN_NORMAL);
+
+        // each part bins its own slice of the points in its own histogram
+        cellOf = new int[n];
+        int parts = Math.max(1, Math.min(ComputeEngine.getParallelism(), n / 65536));
+        final int[][] partCounts = new int[parts][];
+        final List<RecursiveAction> tasks = new ArrayList<RecursiveAction>();
+        for(int p=0; p<parts; p++)
+        {
+            final int part = p;
+            final int from = (int)((long)n * p / parts);
+            final int to = (int)((long)n * (p + 1) / parts);
+            tasks.add(new RecursiveAction()
+            {
+                protected void compute()
+                {
+                    partCounts[part] = bin(x, y, from, to);
+                }
+            });
+        }
+        ComputeEngine.getPool().invoke(new RecursiveAction()
+        {
+            protected void compute()
+            {
+                invokeAll(tasks);
+            }
+        });
+
+        counts = partCounts[0];
+        for(int p=1; p<parts; p++)
+            for(int c=0; c<counts.length; c++)
+                counts[c] += partCounts[p][c];
+        int max = 0;
+        for(int c=0; c<counts.length; c++)
+            max = Math.max(max, counts[c]);
+        maxCount = max;
+        selectedCounts = new int[size * size];
+    }
+
+    private int[] bin(double[] x, double[] y, int from, int to)
+    {
+        int[] h = new int[size * size];
+        double sx = size / (maxX - minX);
+        double sy = size / (maxY - minY);
+        for(int i=from; i<to; i++)
+        {
+            if(isValid(x[i], y[i]))
+            {
+                int cx = Math.min((int)((x[i] - minX) * sx), size - 1);
+                int cy = Math.min((int)((y[i] - minY) * sy), size - 1);
+                cellOf[i] = cy * size + cx;
+                h[cellOf[i]]++;
+            }
+            else
+                cellOf[i] = -1;
+        }
+        return h;
+    }
+
+    private static boolean isValid(double x, double y)
+    {
+        return !(Double.isNaN(x) || Double.isNaN(y) || Double.isInfinite(x) || Double.isInfinite(y));
+    }
+
+    public int getSize() { return size; }
+    public double getMinX() { return minX; }
+    public double getMaxX() { return maxX; }
+    public double getMinY() { return minY; }
+    public double getMaxY() { return maxY; }
+    public int getCell(int i) { return cellOf[i]; }     // -1 for invalid coordinates
+    public int getCount(int cell) { return counts[cell]; }
+    public int getSelectedCount(int cell) { return selectedCounts[cell]; }
+
+    /**
+     * Count the selected points again, only visiting the points whose selection has changed
+     * since the last call. Nothing is done if the selection stamp has not changed.
+     * @param selection selected points
+     * @param stamp selection stamp
+     * @return true if the selected counts have changed
+     */
+    public boolean updateSelection(BitSet selection, long stamp)
+    {
+        if(stamp == countedStamp)
+            return false;
+        countedStamp = stamp;
+        BitSet changed = (BitSet)selection.clone();
+        changed.xor(counted);
+        if(changed.isEmpty())
+            return false;
+        for(int i=changed.nextSetBit(0); (i >= 0) && (i < cellOf.length); i=changed.nextSetBit(i+1))
+        {
+            if(cellOf[i] >= 0)
+                selectedCounts[cellOf[i]] += selection.get(i) ? 1 : -1;
+        }
+        counted.xor(changed);
+        return true;
+    }
+
+    /**
+     * Fill an RGBA image, one pixel per cell (rows from minY to maxY): the density of a cell
+     * (logarithmic scale) gives its colour, empty cells are transparent, and cells holding
+     * selected points are white
+     * @param out image, of getSize() * getSize() * 4 bytes
+     * @param colors colour map (see getColorMap)
+     */
+    public void fillImage(ByteBuffer out, int[] colors)
+    {
+        double scale = (colors.length - 1) / Math.log1p(Math.max(maxCount, 1));
+        out.clear();
+        for(int c=0; c<counts.length; c++)
+        {
+            if(counts[c] == 0)
+                out.putInt(0);
+            else if(selectedCounts[c] > 0)
+                out.put((byte)255).put((byte)255).put((byte)255).put((byte)255);
+            else
+            {
+                int rgb = colors[(int)(Math.log1p(counts[c]) * scale)];
+                out.put((byte)(rgb >> 16)).put((byte)(rgb >> 8)).put((byte)rgb).put((byte)255);
+            }
+        }
+        out.flip();
+    }
+
+    /**
+     * Get a colour map, from low to high densities
+     * @param map HEAT_COLORS or GRAY_COLORS
+     * @return 256 colours, as 0xRRGGBB values
+     * @throws java.lang.Exception
+     */
+    public static int[] getColorMap(int map) throws Exception
+    {
+        int[] colors = new int[256];
+        for(int i=0; i<256; i++)
+        {
+            if(map == HEAT_COLORS)  // dark red, red, yellow, white
+            {
+                int r = Math.min(255, 64 + 3 * i);
+                int g = Math.max(0, Math.min(255, 3 * i - 255));
+                int b = Math.max(0, 3 * i - 510);
+                colors[i] = (r << 16) | (g << 8) | b;
+            }
+            else if(map == GRAY_COLORS)
+            {
+                int v = 48 + i * 207 / 255;
+                colors[i] = (v << 16) | (v << 8) | v;
+            }
+            else
+                throw new Exception("Only HEAT_COLORS and GRAY_COLORS are allowed!");
+        }
+        return colors;
+    }
+}
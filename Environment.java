@@ -24,8 +24,6 @@ Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
  * @author ABATI Mathieu
  */
 
-import java.util.Vector;
-
 /**
  * The Environment class contains values, constants, and others public variables.
  * Some calculations with these values are made here.
@@ -33,40 +31,52 @@ import java.util.Vector;
 final class Environment
 {
     // quasars related data
-    private static Vector<Quasar> quasars;
+    private static QuasarCatalog quasars;
     private static double ascension_max;
     
-    // cosmological constants
-    private static double lambda;
-    private static double omega;
-    private static double kappa;
-    private static double alpha;
-    
-    // basis projection vectors
-    private static int view;
-    private static double userRA1;
-    private static double userDec1;
-    private static double userBeta;
-    private static Vect4d E0 = new Vect4d();
-    private static Vect4d E1 = new Vect4d();
-    private static Vect4d E2 = new Vect4d();
-    private static Vect4d E3 = new Vect4d();
+    // cosmological constants and calculations settings, projection vectors
+    // (immutable snapshots, replaced when a value changes: readers never need locks)
+    private static volatile CosmologySnapshot cosmology;
+    private static volatile ViewSnapshot viewSnapshot;
+    
+    // comoving distances
+    private static ComovingDistTable distanceTable;
     
     // misc
     private static ViewerCanvas openGLViewerCanvas;
-    private static boolean precisionEnabled;
-    private static boolean comovingSpace;
-    private static boolean somethingToShow;
+    private static volatile boolean somethingToShow;
     private static MainWindow mainWin;
     
     /**
      * Initializes environment datas
      */
     public static void initEnvironment()
+    {
+        initCalculations();
+        
+        // creating a new OpenGL viewer canvas
+        openGLViewerCanvas = new ViewerCanvas();
+    }
+    
+    /**
+     * Initializes environment datas needed by calculations only: no viewer canvas is created
+     * (used without a display, by the batch mode and the benchmarks)
+     */
+    public static void initCalculations()
     {
         quasars = null;
         ascension_max = 0;
         
+        // by default, the calculations are faster but are less precise,
+        // comoving distances are interpolated in a precomputed table,
+        // and user wants to see reference space
+        cosmology = new CosmologySnapshot(0, 0, 0, 0, false, FAST_TOLERANCE, DISTANCE_TABLE, FAST_DISTANCE_ERROR);
+        distanceTable = null;
+        
+        // projection defaults
+        // Ra1 units : hours : 0 to 24, Dec1 units : degrees : -90 to 90, Beta units : hours : 0 to 24
+        viewSnapshot = new ViewSnapshot(1, 0.0d, 0.0d, 0.0d);
+        
         // cosmological constants
         try
         {
@@ -79,20 +89,7 @@ final class Environment
             System.exit(1);
         }
         
-        // creating a new OpenGL viewer canvas
-        openGLViewerCanvas = new ViewerCanvas();
-        
-        // by default, the calculations are faster but are less precise
-        precisionEnabled = false;
-        
-        // projection defaults
-        view = 1;
-        userRA1 = 0.0d; // units : hours : 0 to 24
-        userDec1 = 0.0d; // units : degrees : -90 to 90
-        userBeta = 0.0d; // units : hours : 0 to 24
-        
         // misc
-        comovingSpace = false;      // user wants to see reference space
         somethingToShow = false;    // nothing to draw in viewer canvas at this time
     }
     
@@ -102,15 +99,15 @@ final class Environment
     // ------------------------------
     
      /**
-     * Get quasars Vector (list of loaded quasars)
-     * @return quasars Vector
+     * Get quasars catalog (loaded quasars)
+     * @return quasars catalog
      */
-    public static Vector<Quasar> getQuasars() { return quasars; }
+    public static QuasarCatalog getQuasars() { return quasars; }
     /**
-     * Set quasars Vector (list of quasars)
-     * @param q (new quasars Vector)
+     * Set quasars catalog
+     * @param q (new quasars catalog)
      */
-    public static void setQuasars(Vector<Quasar> q) { quasars = q; }
+    public static void setQuasars(QuasarCatalog q) { quasars = q; }
     
     /**
      * Get the max ascension from the used registry's quasars
@@ -138,8 +135,9 @@ final class Environment
      * @param newkappa
      * @param newalpha
      */
-    public static void setCosmoConsts(double newlambda, double newomega, double newkappa, double newalpha) throws Exception
+    public static synchronized void setCosmoConsts(double newlambda, double newomega, double newkappa, double newalpha) throws Exception
     {
+        CosmologySnapshot c = cosmology;
         if(UniverseViewer.floor(newlambda - newkappa + newomega + newalpha, 5) != 1.0d)
             throw new Exception("Constraint broken:\nlambda - kappa + omega + alpha = 1.0 not verified!");
         if(newomega < 0)
@@ -148,35 +146,38 @@ final class Environment
         {
             throw new Exception("Constraint broken:\n(27/4) * lambda * omega² > kappa^3 not verified!");
         }
-        if(!comovingSpace && newkappa == 0)
+        if(!c.isComovingSpace() && newkappa == 0)
             throw new Exception("kappa cannot be equal to zero if comovingSpace is not checked!");
             
-        lambda = newlambda;
-        omega = newomega;
-        kappa = newkappa;
-        alpha = newalpha;
+        cosmology = c.withConstants(newlambda, newomega, newkappa, newalpha);
     }
     
     /**
      * Get lambda cosmological constant
      * @return lambda value (double)
      */
-    public static double getLambda() { return lambda; }
+    public static double getLambda() { return cosmology.getLambda(); }
     /**
      * Get omega cosmological constant
      * @return omega value (double)
      */
-    public static double getOmega() { return omega; }
+    public static double getOmega() { return cosmology.getOmega(); }
     /**
      * Get kappa cosmological constant
      * @return kappa value (double)
      */
-    public static double getKappa() { return kappa; }
+    public static double getKappa() { return cosmology.getKappa(); }
     /**
      * Get alpha cosmological constant
      * @return alpha value (double)
      */
-    public static double getAlpha() { return alpha; }
+    public static double getAlpha() { return cosmology.getAlpha(); }
+    
+    /**
+     * Get the current cosmological constants and calculations settings, as an immutable snapshot
+     * @return cosmology snapshot
+     */
+    public static CosmologySnapshot getCosmology() { return cosmology; }
     
     
     // --------------------
@@ -190,7 +191,7 @@ final class Environment
      */ 
     public static double getUserRa1Rad() 
     {
-        return userRA1;
+        return viewSnapshot.getRa1();
     }
     /**
      * Get Dec1 (radians) value
@@ -198,7 +199,7 @@ final class Environment
      */
     public static double getUserDec1Rad() 
     {
-        return userDec1;
+        return viewSnapshot.getDec1();
     }
     /**
      * Get Beta (radians) value
@@ -206,7 +207,7 @@ final class Environment
      */
     public static double getUserBetaRad() 
     {
-        return userBeta;
+        return viewSnapshot.getBeta();
     }
     /**
      * Get Dec1 (degrees) value
@@ -214,7 +215,7 @@ final class Environment
      */
     public static double getUserDec1Deg() 
     {
-        return 180*userDec1/Math.PI;
+        return 180*viewSnapshot.getDec1()/Math.PI;
     }
     /**
      * Get Beta (degrees) value
@@ -222,128 +223,63 @@ final class Environment
      */
     public static double getUserBetaHours()
     {
-        return 12*userBeta/Math.PI;
+        return 12*viewSnapshot.getBeta()/Math.PI;
     }
     /**
      * Set Ra1 value (set by user)
      * @param RA1
      */
-    public static void setUserRa1(double RA1) 
+    public static synchronized void setUserRa1(double RA1) 
     {
-        userRA1 = (Math.PI/12)*RA1;
+        viewSnapshot = viewSnapshot.withRa1((Math.PI/12)*RA1);
     }
     /**
      * Set Dec1 value (set by user)
      * @param Dec1
      */
-    public static void setUserDec1(double Dec1) 
+    public static synchronized void setUserDec1(double Dec1) 
     {
-        userDec1 = (Math.PI/180)*Dec1;
+        viewSnapshot = viewSnapshot.withDec1((Math.PI/180)*Dec1);
     }
     /**
      * Set Beta value (set by user)
      * @param Beta
      */
-    public static void setUserBeta(double Beta)
+    public static synchronized void setUserBeta(double Beta)
     {
-        userBeta = (Math.PI/12)*Beta;
+        viewSnapshot = viewSnapshot.withBeta((Math.PI/12)*Beta);
     }
     
     /**
-     * Computing projections vectors
+     * Get the current view, angles and projection vectors, as an immutable snapshot
+     * @return view snapshot
      */
-    public static void setProjVects()
-    {
-        Vect3d P1 = new Vect3d();
-        
-        P1.setX(Math.cos(getUserRa1Rad())*Math.cos(getUserDec1Rad()));
-        P1.setY(Math.sin(getUserRa1Rad())*Math.cos(getUserDec1Rad()));
-        P1.setZ(Math.sin(getUserDec1Rad()));
-
-        Vect3d eta1 = new Vect3d();
-        Vect3d eta2 = new Vect3d();
-        
-        if(Math.abs(P1.getX() - 1) > 1e-5) // 1e-5 = epsilon = 2PI/(24*60*60) => epsilon = une seconde d'arc
-        {
-            Vect3d i = new Vect3d();
-            i.setX(1);
-            i.setY(0);
-            i.setZ(0);
-            Vect3d temp = P1.vectProd3d(i);
-            double norme = temp.norm();
-            eta1.setX(temp.getX()/norme);
-            eta1.setY(temp.getY()/norme);
-            eta1.setZ(temp.getZ()/norme);
-        }
-        else //if(Math.abs(P1.getY() - 1) > 1e-5) 
-        {
-            Vect3d j = new Vect3d();
-            j.setX(0);
-            j.setY(1);
-            j.setZ(0);
-            Vect3d temp = P1.vectProd3d(j);
-            double norme = temp.norm();
-            eta1.setX(temp.getX()/norme);
-            eta1.setY(temp.getY()/norme);
-            eta1.setZ(temp.getZ()/norme);
-        }
-        
-        eta2 = P1.vectProd3d(eta1);
-
-        Vect3d P2 = new Vect3d();
-        P2.setX(Math.cos(getUserBetaRad())*eta1.getX()+Math.sin(getUserBetaRad())*eta2.getX());
-        P2.setY(Math.cos(getUserBetaRad())*eta1.getY()+Math.sin(getUserBetaRad())*eta2.getY());
-        P2.setZ(Math.cos(getUserBetaRad())*eta1.getZ()+Math.sin(getUserBetaRad())*eta2.getZ());
-
-        Vect3d P3 = new Vect3d();
-        P3 = P1.vectProd3d(P2);
-        
-        // Projection vectors :
-        E0.setX(0.0d);
-        E0.setY(0.0d);
-        E0.setZ(0.0d);
-        E0.setT(1.0d);
-
-        E1.setX(P1.getX());
-        E1.setY(P1.getY());
-        E1.setZ(P1.getZ());
-        E1.setT(0.0d);
-
-        E2.setX(P2.getX());
-        E2.setY(P2.getY());
-        E2.setZ(P2.getZ());
-        E2.setT(0.0d);
-
-        E3.setX(P3.getX());
-        E3.setY(P3.getY());
-        E3.setZ(P3.getZ());
-        E3.setT(0.0d);
-    }
+    public static ViewSnapshot getViewSnapshot() { return viewSnapshot; }
     
     /*
-     * Return projection vectors
+     * Return projection vectors (copies)
      */
-    public static Vect4d getProjVectE0() { return E0; }
-    public static Vect4d getProjVectE1() { return E1; }
-    public static Vect4d getProjVectE2() { return E2; }
-    public static Vect4d getProjVectE3() { return E3; }
+    public static Vect4d getProjVectE0() { return viewSnapshot.getProjVect(0); }
+    public static Vect4d getProjVectE1() { return viewSnapshot.getProjVect(1); }
+    public static Vect4d getProjVectE2() { return viewSnapshot.getProjVect(2); }
+    public static Vect4d getProjVectE3() { return viewSnapshot.getProjVect(3); }
     
     /**
      * Return current view
      * @return view
      */
-    public static int getView() { return view; }
+    public static int getView() { return viewSnapshot.getView(); }
     
     /**
      * Set current view (current view is set by user)
      * @param v
      * @throws java.lang.Exception
      */
-    public static void setView(int v) throws Exception
+    public static synchronized void setView(int v) throws Exception
     {
         if((v<1) || (v>6))
             throw new Exception("View number incorrect, must be {1,2,3,4,5,6}");
-        view = v;
+        viewSnapshot = viewSnapshot.withView(v);
     }
     
     
@@ -359,25 +295,119 @@ final class Environment
     
     /**
      * Enable / Disable precision (takes more time)
+     * Precision sets the tolerance of the comoving distances integrals, and the error
+     * bound of the comoving distances table, so it applies to all distance modes.
      * @param prec
      */
-    public static void enablePrecision(boolean prec) { precisionEnabled = prec; }
+    public static synchronized void enablePrecision(boolean prec)
+    {
+        cosmology = cosmology.withIntegrationTolerance(prec ? PRECISE_TOLERANCE : FAST_TOLERANCE)
+                             .withDistanceErrorBound(prec ? PRECISE_DISTANCE_ERROR : FAST_DISTANCE_ERROR);
+    }
+    // integration tolerances, and comoving distances table error bounds
+    public static final double PRECISE_TOLERANCE = 1e-10;
+    public static final double FAST_TOLERANCE = 1e-6;
+    public static final double PRECISE_DISTANCE_ERROR = 1e-12;
+    public static final double FAST_DISTANCE_ERROR = 1e-9;
+    
+    /**
+     * Get the tolerance of the comoving distances integrals
+     * @return absolute error wanted
+     */
+    public static double getIntegrationTolerance() { return cosmology.getIntegrationTolerance(); }
+    
+    /**
+     * Set the tolerance of the comoving distances integrals
+     * @param tol absolute error wanted
+     * @throws java.lang.Exception
+     */
+    public static synchronized void setIntegrationTolerance(double tol) throws Exception
+    {
+        if(!(tol > 0))
+            throw new Exception("Integration tolerance must be positive");
+        cosmology = cosmology.withIntegrationTolerance(tol);
+    }
+    
+    /**
+     * Get the integrator for the current cosmological constants
+     * @return comoving distances integrator
+     */
+    public static AdaptiveIntegral getIntegrator() { return cosmology.getIntegrator(); }
     
     /**
      * Enable / Disable comoving space
      * Comoving space can't be disabled if kappa = 0
      * @param com
      */
-    public static void comovingSpace(boolean com) throws Exception
+    public static synchronized void comovingSpace(boolean com) throws Exception
     {
         if(com == false)
         {
-            if(kappa == 0)
+            if(cosmology.getKappa() == 0)
                     throw new Exception("Cant disable comoving space option: Kappa = 0!");
         }
-        comovingSpace = com;
+        cosmology = cosmology.withComovingSpace(com);
+    }
+    
+    /**
+     * Is comoving space enabled?
+     * @return true if comoving space is enabled
+     */
+    public static boolean isComovingSpace() { return cosmology.isComovingSpace(); }
+    
+    /**
+     * Get the comoving distance calculation mode
+     * @return DISTANCE_INTEGRAL, DISTANCE_TABLE or DISTANCE_SORTED
+     */
+    public static int getDistanceMode() { return cosmology.getDistanceMode(); }
+    
+    /**
+     * Set the comoving distance calculation mode
+     * @param m DISTANCE_INTEGRAL, DISTANCE_TABLE or DISTANCE_SORTED
+     * @throws java.lang.Exception
+     */
+    public static synchronized void setDistanceMode(int m) throws Exception
+    {
+        if((m != DISTANCE_INTEGRAL) && (m != DISTANCE_TABLE) && (m != DISTANCE_SORTED))
+            throw new Exception("Distance mode accepted values are: DISTANCE_INTEGRAL, DISTANCE_TABLE, DISTANCE_SORTED");
+        cosmology = cosmology.withDistanceMode(m);
+    }
+    // distance modes
+    public static final int DISTANCE_INTEGRAL = 1;  // one integral computed for each quasar
+    public static final int DISTANCE_TABLE = 2;     // interpolation in a table, computed once for the cosmological constants
+    public static final int DISTANCE_SORTED = 3;    // quasars sorted by redshift, only the gaps between neighbours are integrated
+    
+    /**
+     * Get the error bound of the comoving distances table
+     * @return max difference allowed with the trapezoid integral
+     */
+    public static double getDistanceErrorBound() { return cosmology.getDistanceErrorBound(); }
+    
+    /**
+     * Set the error bound of the comoving distances table
+     * @param e max difference allowed with the trapezoid integral
+     * @throws java.lang.Exception
+     */
+    public static synchronized void setDistanceErrorBound(double e) throws Exception
+    {
+        if(!(e > 0))
+            throw new Exception("Distance error bound must be positive");
+        cosmology = cosmology.withDistanceErrorBound(e);
     }
     
+    /**
+     * Get the number of threads used by the calculations
+     * @return parallelism level
+     */
+    public static int getParallelism() { return ComputeEngine.getParallelism(); }
+    
+    /**
+     * Set the number of threads used by the calculations, before the first calculation
+     * @param p parallelism level (at least 1)
+     * @throws java.lang.Exception
+     */
+    public static void setParallelism(int p) throws Exception { ComputeEngine.setParallelism(p); }
+    
     public static boolean isSomethingToShow() { return somethingToShow; }
     
     public static void setMainWindow(MainWindow window) { mainWin = window; }
@@ -399,18 +429,59 @@ final class Environment
 
         if(flag == UPDATE_ALL)
         {
-            Environment.calcQuasarsAngularDist();
-            Environment.calcQuasarsPos();
-            Environment.calcQuasarsProj();
-            Environment.getopenGLViewerCanvas().updateCanvas();
+            if(quasars != null)
+            {
+                // angular distances, positions and projections computed in a single parallel pass
+                ComputeEngine.compute(quasars, ComputeEngine.STAGE_ALL);
+                somethingToShow = true;
+            }
+            refreshViewer();
         }
         if(flag == UPDATE_VIEW)
         {
             Environment.calcQuasarsProj();
-            Environment.getopenGLViewerCanvas().updateCanvas();
+            refreshViewer();
         }
         if(flag == UPDATE_VIEWER)
-            Environment.getopenGLViewerCanvas().updateCanvas();
+            refreshViewer();
+    }
+    
+    /**
+     * Redraw the viewer canvas, if any (there is none without display, see initCalculations).
+     * Projections computed again are sent to OpenGL by the canvas itself (see QuasarCatalog.getProjectionStamp).
+     */
+    private static void refreshViewer()
+    {
+        ViewerCanvas canvas = openGLViewerCanvas;
+        if(canvas != null)
+            canvas.updateCanvas();
+    }
+    
+    /**
+     * Update the environment in background (see TaskExecutor), UPDATE_VIEWER is done immediately.
+     * The viewer keeps showing the current values until the new ones are computed, close
+     * requests are merged and only the last values are shown (see RecomputeScheduler).
+     * @param flag, indicate what to update (UPDATE_ALL, UPDATE_VIEW, UPDATE_VIEWER)
+     */
+    public static void updateLater(int flag) throws Exception
+    {
+        if((flag != UPDATE_ALL) && (flag != UPDATE_VIEW) && (flag != UPDATE_VIEWER))
+            throw new Exception("Update accepted values are: UPDATE_ALL, UPDATE_VIEW, UPDATE_VIEWER");
+        if(flag == UPDATE_VIEWER)
+            update(flag);
+        else
+            RecomputeScheduler.request(flag);
+    }
+    
+    /**
+     * Show a computed catalog in the viewer canvas, in place of the current one
+     * @param q quasars catalog, with computed projections
+     */
+    static void show(QuasarCatalog q)
+    {
+        quasars = q;
+        somethingToShow = true;
+        refreshViewer();
     }
     // update constants
     public static final int UPDATE_ALL = 1; // update all (quasars calculations, view and projections, viewer canvas
@@ -418,16 +489,26 @@ final class Environment
     public static final int UPDATE_VIEWER = 3;   // update viewer canvas
     
     /**
-     * Computing the comoving distance for the quasar i
-     * @param i, quasar index
-     * @return value of comoving distance
+     * Get the comoving distances table for a catalog and a cosmology, build it if necessary.
+     * The table is kept until cosmological constants change, or until a catalog needs a larger redshift.
+     * @param q quasars catalog
+     * @param c cosmology snapshot
+     * @return comoving distances table
      */
-    private static double comovingDist(int i)
+    static synchronized ComovingDistTable getComovingDistTable(QuasarCatalog q, CosmologySnapshot c)
     {
-        if(precisionEnabled)
-            return Integral.integrate(1.0d / (1.0d + quasars.get(i).getRedshift()), 1.0d, 0.01d); // takes more time but precise
-        else
-            return Integral2.integrate(1.0d / (1.0d + quasars.get(i).getRedshift()), 1.0d, 6); // faster but less precise
+        double zMax = 0;
+        double[] z = q.getRedshiftColumn();
+        for(int i=0; i<q.size(); i++)
+            if(z[i] > zMax)
+                zMax = z[i];
+        double aMin = 1.0d / (1.0d + zMax);
+        
+        if((distanceTable != null) && distanceTable.matches(c, aMin))
+            return distanceTable;
+        ComovingDistTable t = ComovingDistTable.build(c, aMin);
+        distanceTable = t;
+        return t;
     }
     /**
      * Computing the angular distance for all quasars, using comoving distance
@@ -435,19 +516,11 @@ final class Environment
      */
     public static boolean calcQuasarsAngularDist()
     {
-        double sqrt_kappa;
-        if(kappa != 0) // angular distance is inexistant for kappa = 0
+        if(cosmology.getKappa() != 0) // angular distance is inexistant for kappa = 0
         {
             if(quasars != null)
             {
-                if(kappa < 0.0d)
-                    sqrt_kappa = Math.sqrt(-kappa);
-                else    // kappa > 0
-                    sqrt_kappa = Math.sqrt(kappa);
-
-                for(int i=0; i<quasars.size(); i++)
-                    quasars.get(i).setAngularDist(sqrt_kappa * comovingDist(i));
-
+                ComputeEngine.compute(quasars, ComputeEngine.STAGE_DIST);
                 return true;    // success
             }
             else
@@ -465,133 +538,19 @@ final class Environment
     {
         if(quasars != null)
         {
-            if(!comovingSpace)
-            {
-                if(kappa < 0.0d)    
-                    for(int i=0; i<quasars.size(); i++)
-                    {
-                        Vect4d vect = new Vect4d();
-                        vect.setX(Math.sinh(quasars.get(i).getAngularDist()) * Math.cos(quasars.get(i).getAscension()) * Math.cos(quasars.get(i).getDeclination()));
-                        vect.setY(Math.sinh(quasars.get(i).getAngularDist()) * Math.sin(quasars.get(i).getAscension()) * Math.cos(quasars.get(i).getDeclination()));
-                        vect.setZ(Math.sinh(quasars.get(i).getAngularDist()) * Math.sin(quasars.get(i).getDeclination()));
-                        vect.setT(Math.cosh(quasars.get(i).getAngularDist()));
-                        quasars.get(i).setPos(vect);
-                    }
-                else if(kappa > 0.0d)
-                    for(int i=0; i<quasars.size(); i++)
-                    {
-                        Vect4d vect = new Vect4d();
-                        vect.setX(Math.sin(quasars.get(i).getAngularDist()) * Math.cos(quasars.get(i).getAscension()) * Math.cos(quasars.get(i).getDeclination()));
-                        vect.setY(Math.sin(quasars.get(i).getAngularDist()) * Math.sin(quasars.get(i).getAscension()) * Math.cos(quasars.get(i).getDeclination()));
-                        vect.setZ(Math.sin(quasars.get(i).getAngularDist()) * Math.sin(quasars.get(i).getDeclination()));
-                        vect.setT(Math.cos(quasars.get(i).getAngularDist()));
-                        quasars.get(i).setPos(vect);
-                    }
-                return true;    // success
-            }
-            else { // comoving space
-                if(kappa < 0.0d)    
-                    for(int i=0; i<quasars.size(); i++)
-                    {
-                        Vect4d vect = new Vect4d();
-                        vect.setX((1/Math.sqrt(-kappa))*Math.sinh(quasars.get(i).getAngularDist()) * Math.cos(quasars.get(i).getAscension()) * Math.cos(quasars.get(i).getDeclination()));
-                        vect.setY((1/Math.sqrt(-kappa))*Math.sinh(quasars.get(i).getAngularDist()) * Math.sin(quasars.get(i).getAscension()) * Math.cos(quasars.get(i).getDeclination()));
-                        vect.setZ((1/Math.sqrt(-kappa))*Math.sinh(quasars.get(i).getAngularDist()) * Math.sin(quasars.get(i).getDeclination()));
-                        vect.setT((1/Math.sqrt(-kappa))*Math.cosh(quasars.get(i).getAngularDist()));
-                        quasars.get(i).setPos(vect);
-                    }
-                else if(kappa > 0.0d)
-                    for(int i=0; i<quasars.size(); i++)
-                    {
-                        Vect4d vect = new Vect4d();
-                        vect.setX((1/Math.sqrt(kappa))*Math.sin(quasars.get(i).getAngularDist()) * Math.cos(quasars.get(i).getAscension()) * Math.cos(quasars.get(i).getDeclination()));
-                        vect.setY((1/Math.sqrt(kappa))*Math.sin(quasars.get(i).getAngularDist()) * Math.sin(quasars.get(i).getAscension()) * Math.cos(quasars.get(i).getDeclination()));
-                        vect.setZ((1/Math.sqrt(kappa))*Math.sin(quasars.get(i).getAngularDist()) * Math.sin(quasars.get(i).getDeclination()));
-                        vect.setT((1/Math.sqrt(kappa))*Math.cos(quasars.get(i).getAngularDist()));
-                        quasars.get(i).setPos(vect);
-                    }
-                else // kappa = 0
-                    for(int i=0; i<quasars.size(); i++)
-                    {
-                        double cd = comovingDist(i);
-                        Vect4d vect = new Vect4d();
-                        vect.setX(cd * Math.cos(quasars.get(i).getAscension()) * Math.cos(quasars.get(i).getDeclination()));
-                        vect.setY(cd * Math.sin(quasars.get(i).getAscension()) * Math.cos(quasars.get(i).getDeclination()));
-                        vect.setZ(cd * Math.sin(quasars.get(i).getDeclination()));
-                        vect.setT(0);
-                        quasars.get(i).setPos(vect);
-                    }
-                return true;    // success
-            }
+            ComputeEngine.compute(quasars, ComputeEngine.STAGE_POS);
+            return true;    // success
         }
         else         
             return false;   // fail
-  }
+    }
     
     /**
      * Computing 2D projection for all quasars
      */
     public static void calcQuasarsProj()
     {
-        Environment.setProjVects();
-        switch(view)
-        {
-            case 1: // E0 E1
-                for(int i=0; i<quasars.size(); i++)
-                {
-                    quasars.get(i).setx(quasars.get(i).getPos().dotProd4d(E0));
-                    quasars.get(i).sety(quasars.get(i).getPos().dotProd4d(E1));
-                }
-            break;
-
-            case 2: // E0 E2
-                for(int i=0; i<quasars.size(); i++)
-                {
-                    quasars.get(i).setx(quasars.get(i).getPos().dotProd4d(E0));
-                    quasars.get(i).sety(quasars.get(i).getPos().dotProd4d(E2));
-                }
-            break;
-
-            case 3: // E0 E3
-                for(int i=0; i<quasars.size(); i++)
-                {
-                    quasars.get(i).setx(quasars.get(i).getPos().dotProd4d(E0));
-                    quasars.get(i).sety(quasars.get(i).getPos().dotProd4d(E3));
-                }
-            break;
-
-            case 4: // E1 E2
-                for(int i=0; i<quasars.size(); i++)
-                {
-                    quasars.get(i).setx(quasars.get(i).getPos().dotProd4d(E1));
-                    quasars.get(i).sety(quasars.get(i).getPos().dotProd4d(E2));
-                }
-            break;
-
-            case 5: // E1 E3
-                for(int i=0; i<quasars.size(); i++)
-                {
-                    quasars.get(i).setx(quasars.get(i).getPos().dotProd4d(E1));
-                    quasars.get(i).sety(quasars.get(i).getPos().dotProd4d(E3));
-                }
-            break;
-
-            case 6: // E2 E3
-                for(int i=0; i<quasars.size(); i++)
-                {
-                    quasars.get(i).setx(quasars.get(i).getPos().dotProd4d(E2));
-                    quasars.get(i).sety(quasars.get(i).getPos().dotProd4d(E3));
-                }
-            break;
-
-            default : // E0 E1
-                for(int i=0; i<quasars.size(); i++)
-                {
-                    quasars.get(i).setx(quasars.get(i).getPos().dotProd4d(E0));
-                    quasars.get(i).sety(quasars.get(i).getPos().dotProd4d(E1));
-                }
-            break;
-        }
+        ComputeEngine.compute(quasars, ComputeEngine.STAGE_PROJ);
         
         somethingToShow = true; // now, there is something to draw in viewer canvas
     }
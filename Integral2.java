@@ -30,8 +30,6 @@ Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
  */
 final class Integral2
 {
-    private static double largeur;
-    
     public static double poly(double a)
     {
         double value = Environment.getLambda() * Math.pow(a, 4) - Environment.getKappa() * a * a + Environment.getOmega() * a + Environment.getAlpha();
@@ -49,7 +47,7 @@ final class Integral2
         return value;
     }
     
-    private static double ff(double x, double limitA)
+    private static double ff(double x, double limitA, double largeur)
     {
         return funcToIntegrate(limitA + largeur * x);
     }
@@ -68,17 +66,17 @@ final class Integral2
         double s, ee, kk;
         double t[] = new double[maximum];
         
-        largeur = limitB - limitA;
+        double largeur = limitB - limitA;   // local, so that integrate can be called by several threads
         s = 1;
         e = 1;
-        t[0] = 0.5d * (ff(0, limitA) + ff(1, limitA));
+        t[0] = 0.5d * (ff(0, limitA, largeur) + ff(1, limitA, largeur));
         for(j = 1; j<n; j++)
         {
             s = 0.5d * s;
             t[j] = 0;
             for(k = 1; k<e; k++)
             {
-                t[j] = t[j] + ff(s*(2*k-1), limitA);
+                t[j] = t[j] + ff(s*(2*k-1), limitA, largeur);
             }
             t[j] = s * t[j] + 0.5d * t[j-1];
             e = 2*e;
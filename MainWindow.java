@@ -26,21 +26,29 @@ Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
 
 import java.awt.Cursor;
 import java.awt.GridLayout;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.KeyEvent;
 import java.io.BufferedReader;
 import java.io.FileInputStream;
 import java.io.InputStreamReader;
-import java.util.Vector;
+import javax.swing.ButtonGroup;
 import javax.swing.ImageIcon;
+import javax.swing.JCheckBoxMenuItem;
 import javax.swing.JComponent;
 import javax.swing.JDialog;
 import javax.swing.JFileChooser;
 import javax.swing.JLabel;
+import javax.swing.JMenu;
+import javax.swing.JMenuItem;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
+import javax.swing.JRadioButtonMenuItem;
 import javax.swing.JScrollPane;
 import javax.swing.JSpinner;
 import javax.swing.JTabbedPane;
 import javax.swing.JTextArea;
+import javax.swing.KeyStroke;
 import javax.swing.ToolTipManager;
 
 
@@ -94,6 +102,53 @@ public class MainWindow extends javax.swing.JFrame {
         BetaSlider.setMinimum(0);
         BetaValueLabel.setText(Double.toString(SLIDES_PRECISION*Environment.getUserBetaHours()));
         
+        // cancelling background tasks (loading, calculations)
+        JMenuItem cancelMenu = new JMenuItem("Cancel");
+        cancelMenu.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_ESCAPE, 0));
+        cancelMenu.addActionListener(new ActionListener()
+        {
+            public void actionPerformed(ActionEvent e)
+            {
+                TaskExecutor.cancel();
+            }
+        });
+        FileMenu.insert(cancelMenu, 1);
+        
+        // density mode, and its colours
+        final JCheckBoxMenuItem densityMenu = new JCheckBoxMenuItem("Density map");
+        densityMenu.addActionListener(new ActionListener()
+        {
+            public void actionPerformed(ActionEvent e)
+            {
+                ViewerCanvas v = Environment.getopenGLViewerCanvas();
+                v.setDensityMode(densityMenu.isSelected());
+                v.updateCanvas();
+            }
+        });
+        SettingsMenu.add(densityMenu);
+        JMenu colorsMenu = new JMenu("Density colors");
+        ButtonGroup colorsGroup = new ButtonGroup();
+        String[] colorsNames = { "Heat", "Gray" };
+        int[] colorsMaps = { DensityMap.HEAT_COLORS, DensityMap.GRAY_COLORS };
+        for(int c=0; c<colorsNames.length; c++)
+        {
+            final int map = colorsMaps[c];
+            JRadioButtonMenuItem colorsItem = new JRadioButtonMenuItem(colorsNames[c], c == 0);
+            colorsItem.addActionListener(new ActionListener()
+            {
+                public void actionPerformed(ActionEvent e)
+                {
+                    ViewerCanvas v = Environment.getopenGLViewerCanvas();
+                    try { v.setDensityColors(map); }
+                    catch(Exception ex) {}
+                    v.updateCanvas();
+                }
+            });
+            colorsGroup.add(colorsItem);
+            colorsMenu.add(colorsItem);
+        }
+        SettingsMenu.add(colorsMenu);
+        
         Environment.setMainWindow(this);
     }
     
@@ -107,6 +162,24 @@ public class MainWindow extends javax.swing.JFrame {
         selectionManager.updateTable();
     }
     
+    /**
+     * Show a message in the information label
+     * @param message
+     */
+    public void setInfo(String message)
+    {
+        InfoLabel.setText(message);
+    }
+    
+    /**
+     * Get the message shown in the information label
+     * @return message
+     */
+    public String getInfo()
+    {
+        return InfoLabel.getText();
+    }
+    
     
     // ------------
     // MISC METHODS
@@ -764,7 +837,7 @@ public class MainWindow extends javax.swing.JFrame {
             View3ToggleButton.setEnabled(true);
         }
         
-        try{ Environment.update(Environment.UPDATE_ALL); }
+        try{ Environment.updateLater(Environment.UPDATE_ALL); }
         catch (Exception ex) {}
     }
     private void OmegaSpinnerStateChanged(javax.swing.event.ChangeEvent evt) {//GEN-FIRST:event_OmegaSpinnerStateChanged
@@ -787,37 +860,37 @@ public class MainWindow extends javax.swing.JFrame {
     private void View1ToggleButtonActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_View1ToggleButtonActionPerformed
         try{ Environment.setView(1); }//GEN-LAST:event_View1ToggleButtonActionPerformed
         catch (Exception ex) {}
-        try{ Environment.update(Environment.UPDATE_VIEW); }
+        try{ Environment.updateLater(Environment.UPDATE_VIEW); }
         catch (Exception ex) {}
     }                                                 
     private void View2ToggleButtonActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_View2ToggleButtonActionPerformed
         try{ Environment.setView(2); }
         catch (Exception ex) {}
-        try{ Environment.update(Environment.UPDATE_VIEW); }
+        try{ Environment.updateLater(Environment.UPDATE_VIEW); }
         catch (Exception ex) {}
     }//GEN-LAST:event_View2ToggleButtonActionPerformed
     private void View3ToggleButtonActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_View3ToggleButtonActionPerformed
         try{ Environment.setView(3); }
         catch (Exception ex) {}
-        try{ Environment.update(Environment.UPDATE_VIEW); }
+        try{ Environment.updateLater(Environment.UPDATE_VIEW); }
         catch (Exception ex) {}
     }//GEN-LAST:event_View3ToggleButtonActionPerformed
     private void View4ToggleButtonActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_View4ToggleButtonActionPerformed
         try{ Environment.setView(4); }
         catch (Exception ex) {}
-        try{ Environment.update(Environment.UPDATE_VIEW); }
+        try{ Environment.updateLater(Environment.UPDATE_VIEW); }
         catch (Exception ex) {}
     }//GEN-LAST:event_View4ToggleButtonActionPerformed
     private void View5ToggleButtonActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_View5ToggleButtonActionPerformed
         try{ Environment.setView(5); }
         catch (Exception ex) {}
-        try{ Environment.update(Environment.UPDATE_VIEW); }
+        try{ Environment.updateLater(Environment.UPDATE_VIEW); }
         catch (Exception ex) {}
     }//GEN-LAST:event_View5ToggleButtonActionPerformed
     private void View6ToggleButtonActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_View6ToggleButtonActionPerformed
         try{ Environment.setView(6); }
         catch (Exception ex) {}
-        try{ Environment.update(Environment.UPDATE_VIEW); }
+        try{ Environment.updateLater(Environment.UPDATE_VIEW); }
         catch (Exception ex) {}
     }//GEN-LAST:event_View6ToggleButtonActionPerformed
 
@@ -825,7 +898,7 @@ public class MainWindow extends javax.swing.JFrame {
         double val = (double)Ra1Slider.getValue()/SLIDES_PRECISION;
         Environment.setUserRa1(val);
         Ra1ValueLabel.setText(Double.toString(val));
-        try{ Environment.update(Environment.UPDATE_VIEW); }
+        try{ Environment.updateLater(Environment.UPDATE_VIEW); }
         catch (Exception ex) {}
 }//GEN-LAST:event_Ra1SliderStateChanged
 
@@ -833,7 +906,7 @@ public class MainWindow extends javax.swing.JFrame {
         double val = (double)Dec1Slider.getValue()/SLIDES_PRECISION;
         Environment.setUserDec1(val);
         Dec1ValueLabel.setText(Double.toString(val));
-        try{ Environment.update(Environment.UPDATE_VIEW); }
+        try{ Environment.updateLater(Environment.UPDATE_VIEW); }
         catch (Exception ex) {}
 }//GEN-LAST:event_Dec1SliderStateChanged
 
@@ -841,7 +914,7 @@ public class MainWindow extends javax.swing.JFrame {
         double val = (double)BetaSlider.getValue()/SLIDES_PRECISION;
         Environment.setUserBeta(val);
         BetaValueLabel.setText(Double.toString(val));
-        try{ Environment.update(Environment.UPDATE_VIEW); }
+        try{ Environment.updateLater(Environment.UPDATE_VIEW); }
         catch (Exception ex) {}
 }//GEN-LAST:event_BetaSliderStateChanged
 
@@ -856,15 +929,16 @@ public class MainWindow extends javax.swing.JFrame {
         if(retval == JFileChooser.APPROVE_OPTION)
         {
             String filename = choice.getSelectedFile().getAbsolutePath();
-            ReadFile.read_txt_file(filename);
-            
-            setUniverseMode();
-            
-            try{ Environment.update(Environment.UPDATE_ALL); }
-            catch (Exception ex) {}
-            
-            // updating infoLabel
-            InfoLabel.setText(Environment.getQuasars().size() + " quasars loaded");
+            // loading in background, the current catalog is shown until the new one is ready
+            TaskExecutor.submit(new TaskExecutor.LoadTask(filename)
+            {
+                protected String done()
+                {
+                    String message = super.done();
+                    setUniverseMode();
+                    return message;
+                }
+            });
         }
     }//GEN-LAST:event_OpenMenuActionPerformed
 
@@ -888,7 +962,7 @@ public class MainWindow extends javax.swing.JFrame {
         }
         
         // updating
-        try{ Environment.update(Environment.UPDATE_ALL); }
+        try{ Environment.updateLater(Environment.UPDATE_ALL); }
         catch (Exception ex) {}
     }//GEN-LAST:event_PrecisionMenuActionPerformed
 
@@ -961,7 +1035,7 @@ public class MainWindow extends javax.swing.JFrame {
         }
         
         // updating
-        try{ Environment.update(Environment.UPDATE_ALL); }
+        try{ Environment.updateLater(Environment.UPDATE_ALL); }
         catch (Exception ex) {}
 }//GEN-LAST:event_ComovingSpaceMenuActionPerformed
 
@@ -981,12 +1055,12 @@ public class MainWindow extends javax.swing.JFrame {
     }//GEN-LAST:event_SkyBtnActionPerformed
 
     private void ResetSelectBtnActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_ResetSelectBtnActionPerformed
-        Vector<Quasar> q = Environment.getQuasars();
+        QuasarCatalog q = Environment.getQuasars();
         if(q != null)
         {
-            for(int i=0; i<q.size(); i++)
-                q.get(i).setSelected(false);
+            q.clearSelection();
             Quasar.setSelectedCount(0);
+            Environment.getopenGLViewerCanvas().invalidateSelection();
             Environment.getopenGLViewerCanvas().updateCanvas();
         }
     }//GEN-LAST:event_ResetSelectBtnActionPerformed
@@ -0,0 +1,506 @@
+/*
+Copyright © 2008 FONTAINE Julie
+Copyright © 2008 ABATI Mathieu
+
+This file is part of Universe Viewer.
+
+Universe Viewer is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 2 of the License, or
+(at your option) any later version.
+
+Universe Viewer is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Universe Viewer; if not, write to the Free Software
+Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+/**
+ * @author FONTAINE Julie
+ * @author ABATI Mathieu
+ */
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Quasars registry file reader.
+ * The file is memory-mapped, and values are parsed directly from the mapped bytes:
+ * no String is created for a line or a token (except for unusual numbers, see parseDouble).
+ * Each line holds ascension, declination and redshift separated by spaces or tabs,
+ * other values on a line are ignored, blank lines are skipped.
+ * The file is split into byte ranges ending on line feeds, parsed in parallel on the
+ * ComputeEngine pool (see Environment.setParallelism): ranges rows are first counted,
+ * so each range then writes its quasars at their final place in the catalog.
+ */
+final class MappedCatalogReader
+{
+    // a mapping is limited to 2 GB, larger files are read through several windows
+    private static final int WINDOW_SIZE = 1 << 28;
+    private static final int MIN_RANGE_SIZE = 1 << 20;
+    private static final int RANGES_PER_THREAD = 4;
+    private static final int VALUES_PER_LINE = 3;
+
+    // exact powers of ten (as doubles) for the fast parsing path
+    private static final double[] POW10 = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+    private static final int MAX_MANTISSA_DIGITS = 18;   // digits kept in a long without overflow
+
+    private final String filename;
+    private final int minRangeSize;
+
+    // statistics of the last read
+    private long bytesRead;
+    private long readTime;  // nanoseconds
+    private double ascensionMax;
+
+    // progress of the current read
+    private volatile boolean cancelled;
+    private volatile long length;
+    private final AtomicLong bytesParsed = new AtomicLong();
+
+    /**
+     * Create a reader for a registry file
+     * @param filename
+     */
+    public MappedCatalogReader(String filename)
+    {
+        this(filename, MIN_RANGE_SIZE);
+    }
+
+    /**
+     * Create a reader for a registry file, with a given smallest range size
+     * (small ranges split small files, see split)
+     * @param filename
+     * @param minRangeSize smallest number of bytes of a range
+     */
+    MappedCatalogReader(String filename, int minRangeSize)
+    {
+        this.filename = filename;
+        this.minRangeSize = minRangeSize;
+    }
+
+    /**
+     * Read the registry file
+     * @return quasars catalog
+     * @throws java.io.IOException if the file cannot be read, or a line is malformed
+     */
+    public QuasarCatalog read() throws IOException
+    {
+        long start = System.nanoTime();
+        ascensionMax = Double.NEGATIVE_INFINITY;
+        RandomAccessFile file = new RandomAccessFile(filename, "r");
+        try
+        {
+            FileChannel channel = file.getChannel();
+            length = channel.size();
+            bytesParsed.set(0);
+            QuasarCatalog quasars = new QuasarCatalog();
+
+            long offset = 0;
+            long line = 1;
+            while(offset < length)
+            {
+                int size = (int)Math.min(WINDOW_SIZE, length - offset);
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, offset, size);
+                int end = size;
+                if(offset + size < length)  // the window ends with an incomplete line, it is read with the next window
+                {
+                    while((end > 0) && (window.get(end - 1) != '\n'))
+                        end--;
+                    if(end == 0)
+                        throw new IOException("Line " + line + " is too long");
+                }
+                Range[] ranges = split(window, end, this);
+
+                // counting rows, then parsing each range at its place in the catalog
+                ComputeEngine.getPool().invoke(new RangeTask(ranges, null, 0, ranges.length));
+                long rows = quasars.size();
+                for(int r=0; r<ranges.length; r++)
+                {
+                    ranges[r].firstRow = (int)rows;
+                    ranges[r].firstLine = line;
+                    rows += ranges[r].rows;
+                    line += ranges[r].lines;
+                }
+                if(rows > Integer.MAX_VALUE - 8)
+                    throw new IOException("Too many quasars in registry file");
+                quasars.resize((int)rows);
+                ComputeEngine.getPool().invoke(new RangeTask(ranges, quasars, 0, ranges.length));
+                if(cancelled)
+                    throw new InterruptedIOException("Reading cancelled");
+
+                for(int r=0; r<ranges.length; r++)
+                {
+                    if(ranges[r].error != null)
+                        throw ranges[r].error;
+                    ascensionMax = Math.max(ascensionMax, ranges[r].ascensionMax);
+                }
+                offset += end;
+            }
+            quasars.trimToSize();
+
+            bytesRead = length;
+            readTime = System.nanoTime() - start;
+            return quasars;
+        }
+        finally
+        {
+            file.close();
+        }
+    }
+
+    /**
+     * Get the number of bytes read by the last read
+     * @return file size
+     */
+    public long getBytesRead() { return bytesRead; }
+
+    /**
+     * Get the duration of the last read
+     * @return time in milliseconds
+     */
+    public long getReadTime() { return readTime / 1000000L; }
+
+    /**
+     * Get the throughput of the last read
+     * @return MB read per second
+     */
+    public double getThroughput()
+    {
+        return (readTime == 0) ? 0 : (bytesRead / (1024.0d * 1024.0d)) / (readTime / 1e9);
+    }
+
+    /**
+     * Stop the current read (read then throws an InterruptedIOException)
+     */
+    public void cancel() { cancelled = true; }
+
+    /**
+     * Get the progress of the current read
+     * @return part of the file already parsed, in [0, 1]
+     */
+    public double getProgress()
+    {
+        long l = length;
+        return (l == 0) ? 0 : (double)bytesParsed.get() / l;
+    }
+
+    /**
+     * Get the max ascension of the quasars read by the last read
+     * @return ascension max value (negative infinity if the catalog is empty)
+     */
+    public double getAscensionMax() { return ascensionMax; }
+
+    /**
+     * Split the first end bytes of a window into ranges, each one ending on a line feed
+     * (or at end), of at least minRangeSize bytes
+     */
+    private static Range[] split(MappedByteBuffer window, int end, MappedCatalogReader reader)
+    {
+        int n = ComputeEngine.getParallelism() * RANGES_PER_THREAD;
+        n = Math.max(1, Math.min(n, end / reader.minRangeSize));
+        Range[] ranges = new Range[n];
+        int from = 0;
+        for(int r=0; r<n; r++)
+        {
+            int to = (r == n-1) ? end : Math.max(from, (int)((long)end * (r+1) / n));
+            while((to < end) && (to > 0) && (window.get(to - 1) != '\n'))
+                to++;
+            ranges[r] = new Range(window, from, to, reader);
+            from = to;
+        }
+        return ranges;
+    }
+
+    /**
+     * Count (if quasars is null) or parse a group of ranges
+     */
+    private static final class RangeTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+        private final Range[] ranges;
+        private final QuasarCatalog quasars;
+        private final int from, to;
+
+        RangeTask(Range[] ranges, QuasarCatalog quasars, int from, int to)
+        {
+            this.ranges = ranges;
+            this.quasars = quasars;
+            this.from = from;
+            this.to = to;
+        }
+
+        protected void compute()
+        {
+            if(to - from == 1)
+            {
+                if(quasars == null)
+                    ranges[from].count();
+                else
+                    ranges[from].parse(quasars);
+            }
+            else if(to - from > 1)
+            {
+                int mid = (from + to) >>> 1;
+                invokeAll(new RangeTask(ranges, quasars, from, mid), new RangeTask(ranges, quasars, mid, to));
+            }
+        }
+    }
+
+    /**
+     * A range of bytes of the file, made of complete lines, and its parsing position
+     */
+    private static final class Range
+    {
+        private final MappedByteBuffer window;  // shared by all ranges, only read with absolute gets
+        private final MappedCatalogReader reader;
+        private final int from;
+        private int pos;
+        private int limit;
+
+        private int rows;       // non blank lines
+        private long lines;     // line feeds
+        private int firstRow;   // catalog index of the first quasar
+        private long firstLine; // file line number of the first line
+        private double ascensionMax = Double.NEGATIVE_INFINITY;
+        private IOException error;
+
+        private final double[] values = new double[VALUES_PER_LINE];  // values of the last line parsed
+
+        Range(MappedByteBuffer window, int from, int to, MappedCatalogReader reader)
+        {
+            this.window = window;
+            this.reader = reader;
+            this.from = from;
+            this.limit = to;
+        }
+
+        /**
+         * Count lines and non blank lines of the range
+         */
+        void count()
+        {
+            boolean blankLine = true;
+            for(int i=from; i<limit; i++)
+            {
+                byte b = window.get(i);
+                if(b == '\n')
+                {
+                    lines++;
+                    if(!blankLine)
+                        rows++;
+                    blankLine = true;
+                }
+                else if(!isBlank(b))
+                    blankLine = false;
+            }
+            if(!blankLine)  // last line of the file, without line feed
+                rows++;
+        }
+
+        /**
+         * Parse the range, quasars are stored from firstRow in the catalog
+         */
+        void parse(QuasarCatalog quasars)
+        {
+            if(reader.cancelled)
+                return;
+            double[] ra = quasars.getAscensionColumn();
+            double[] dec = quasars.getDeclinationColumn();
+            double[] z = quasars.getRedshiftColumn();
+            int row = firstRow;
+            long line = firstLine;
+            pos = from;
+            try
+            {
+                while(pos < limit)
+                {
+                    if(parseLine(line))
+                    {
+                        ra[row] = values[0];
+                        dec[row] = values[1];
+                        z[row] = values[2];
+                        if(values[0] > ascensionMax)
+                            ascensionMax = values[0];
+                        row++;
+                    }
+                    line++;
+                }
+            }
+            catch(IOException e)
+            {
+                error = e;
+            }
+            quasars.updateDirections(firstRow, row);
+            reader.bytesParsed.addAndGet(limit - from);
+        }
+
+        private static boolean isBlank(byte b)
+        {
+            return (b == ' ') || (b == '\t') || (b == '\r');
+        }
+
+        private void skipBlanks()
+        {
+            while((pos < limit) && isBlank(window.get(pos)))
+                pos++;
+        }
+
+        /**
+         * Parse a line, from the current position to the next line feed (included)
+         * @return true if values have been read, false for a blank line
+         */
+        private boolean parseLine(long line) throws IOException
+        {
+            skipBlanks();
+            if(pos == limit)    // blanks at the end of the file
+                return false;
+            if(window.get(pos) == '\n')    // blank line
+            {
+                pos++;
+                return false;
+            }
+
+            for(int i=0; i<VALUES_PER_LINE; i++)
+            {
+                skipBlanks();
+                if((pos == limit) || (window.get(pos) == '\n'))
+                    throw new IOException("Line " + line + ": " + VALUES_PER_LINE + " values expected");
+                try
+                {
+                    values[i] = parseDouble();
+                }
+                catch(NumberFormatException e)
+                {
+                    throw new IOException("Line " + line + ": " + e.getMessage());
+                }
+            }
+
+            // ignoring the end of the line
+            while((pos < limit) && (window.get(pos++) != '\n'))
+                ;
+            return true;
+        }
+
+        /**
+         * Parse a decimal number at the current position.
+         * Numbers with at most 18 significant digits and a decimal exponent in [-22, 22] are
+         * computed exactly from a long mantissa and a power of ten; other ones (and NaN,
+         * Infinity, hexadecimal...) are given to Double.parseDouble.
+         * @return parsed value
+         */
+        private double parseDouble()
+        {
+            int start = pos;
+            boolean negative = false;
+            byte c = window.get(pos);
+            if((c == '-') || (c == '+'))
+            {
+                negative = (c == '-');
+                pos++;
+            }
+
+            long mantissa = 0;
+            int digits = 0;     // significant digits in mantissa
+            int exponent = 0;
+            boolean exact = true;
+            boolean any = false;
+
+            // integer part
+            while((pos < limit) && ((c = window.get(pos)) >= '0') && (c <= '9'))
+            {
+                any = true;
+                if(digits < MAX_MANTISSA_DIGITS)
+                {
+                    mantissa = 10 * mantissa + (c - '0');
+                    if(mantissa != 0)
+                        digits++;
+                }
+                else
+                {
+                    exponent++;
+                    exact &= (c == '0');
+                }
+                pos++;
+            }
+            // fractional part
+            if((pos < limit) && (window.get(pos) == '.'))
+            {
+                pos++;
+                while((pos < limit) && ((c = window.get(pos)) >= '0') && (c <= '9'))
+                {
+                    any = true;
+                    if(digits < MAX_MANTISSA_DIGITS)
+                    {
+                        mantissa = 10 * mantissa + (c - '0');
+                        if(mantissa != 0)
+                            digits++;
+                        exponent--;
+                    }
+                    else
+                        exact &= (c == '0');
+                    pos++;
+                }
+            }
+            // exponent
+            if(any && (pos < limit) && (((c = window.get(pos)) == 'e') || (c == 'E')))
+            {
+                pos++;
+                boolean negativeExp = false;
+                if((pos < limit) && (((c = window.get(pos)) == '-') || (c == '+')))
+                {
+                    negativeExp = (c == '-');
+                    pos++;
+                }
+                int e = 0;
+                boolean expDigits = false;
+                while((pos < limit) && ((c = window.get(pos)) >= '0') && (c <= '9'))
+                {
+                    expDigits = true;
+                    if(e < 10000)
+                        e = 10 * e + (c - '0');
+                    pos++;
+                }
+                if(!expDigits)
+                    exact = false;
+                exponent += negativeExp ? -e : e;
+            }
+
+            boolean endOfToken = (pos == limit) || isBlank(window.get(pos)) || (window.get(pos) == '\n');
+            if(any && exact && endOfToken && (mantissa < MAX_EXACT_MANTISSA)
+                    && (exponent >= -22) && (exponent <= 22))
+            {
+                double d = (exponent < 0) ? mantissa / POW10[-exponent] : mantissa * POW10[exponent];
+                return negative ? -d : d;
+            }
+            return parseToken(start);
+        }
+
+        /**
+         * Slow path of parseDouble: the whole token is parsed by Double.parseDouble
+         */
+        private double parseToken(int start)
+        {
+            pos = start;
+            while((pos < limit) && !isBlank(window.get(pos)) && (window.get(pos) != '\n'))
+                pos++;
+            byte[] token = new byte[pos - start];
+            for(int i=0; i<token.length; i++)
+                token[i] = window.get(start + i);
+            return Double.parseDouble(new String(token, StandardCharsets.US_ASCII));
+        }
+    }
+}
@@ -0,0 +1,208 @@
+/*
+Copyright © 2008 FONTAINE Julie
+Copyright © 2008 ABATI Mathieu
+
+This file is part of Universe Viewer.
+
+Universe Viewer is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 2 of the License, or
+(at your option) any later version.
+
+Universe Viewer is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Universe Viewer; if not, write to the Free Software
+Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+/**
+ * @author FONTAINE Julie
+ * @author ABATI Mathieu
+ */
+
+import java.util.Arrays;
+
+/**
+ * Multi-resolution pyramid over 2D points, used to draw huge catalogs when zoomed out.
+ * Level L divides the bounding box in 2^L x 2^L cells and keeps a single point of each
+ * occupied cell: drawing the level whose cells match the canvas pixels shows the same
+ * picture with far fewer points.
+ * Cells are numbered in Morton (Z) order: the cells of a level are the groups of four
+ * consecutive cells of the next level, so all levels are built from the finest one,
+ * in a single pass over the points.
+ */
+final class PointPyramid
+{
+    static final int MIN_POINTS = 200000;       // smaller catalogs are always drawn at full detail
+    private static final int MAX_LEVEL = 11;    // finest level: 2048 x 2048 cells
+    private static final double MAX_RATIO = 0.75;   // a level is only drawn if it keeps less than 75% of the points
+
+    private final int points;       // valid points count
+    private final double width, height;     // bounding box size
+    private final int[] levelStart; // points of level L are rows[levelStart[L]] .. rows[levelStart[L+1]-1]
+    private final int[] rows;
+
+    /**
+     * Build a pyramid over n points
+     * @param x points X coordinates
+     * @param y points Y coordinates
+     * @param n points count
+     */
+    public PointPyramid(double[] x, double[] y, int n)
+    {
+        // bounding box (points with invalid coordinates are ignored)
+        double x0 = Double.POSITIVE_INFINITY, x1 = Double.NEGATIVE_INFINITY;
+        double y0 = Double.POSITIVE_INFINITY, y1 = Double.NEGATIVE_INFINITY;
+        int valid = 0;
+        for(int i=0; i<n; i++)
+        {
+            if(isValid(x[i], y[i]))
+            {
+                x0 = Math.min(x0, x[i]);
+                x1 = Math.max(x1, x[i]);
+                y0 = Math.min(y0, y[i]);
+                y1 = Math.max(y1, y[i]);
+                valid++;
+            }
+        }
+        if(valid == 0)
+        {
+            x0 = x1 = y0 = y1 = 0;
+        }
+        points = valid;
+        width = Math.max(x1 - x0, Double.MIN_NORMAL);
+        height = Math.max(y1 - y0, Double.MIN_NORMAL);
+
+        // first point of each cell of the finest level
+        int side = 1 << MAX_LEVEL;
+        int[] first = new int[side * side];
+        Arrays.fill(first, -1);
+        int occupied = 0;
+        for(int i=0; i<n; i++)
+        {
+            if(isValid(x[i], y[i]))
+            {
+                int cx = Math.min((int)((x[i] - x0) / width * side), side - 1);
+                int cy = Math.min((int)((y[i] - y0) / height * side), side - 1);
+                int code = spread(cx) | (spread(cy) << 1);
+                if(first[code] < 0)
+                {
+                    first[code] = i;
+                    occupied++;
+                }
+            }
+        }
+
+        // finest level, in Morton order
+        int[][] levelCodes = new int[MAX_LEVEL + 1][];
+        int[][] levelRows = new int[MAX_LEVEL + 1][];
+        int[] codes = new int[occupied];
+        int[] reps = new int[occupied];
+        int k = 0;
+        for(int code=0; code<first.length; code++)
+        {
+            if(first[code] >= 0)
+            {
+                codes[k] = code;
+                reps[k] = first[code];
+                k++;
+            }
+        }
+        levelCodes[MAX_LEVEL] = codes;
+        levelRows[MAX_LEVEL] = reps;
+
+        // coarser levels: the four children of a cell are consecutive, the first one is kept
+        int total = occupied;
+        for(int level=MAX_LEVEL-1; level>=0; level--)
+        {
+            int[] childCodes = levelCodes[level + 1];
+            int[] childRows = levelRows[level + 1];
+            int count = 0;
+            for(int c=0; c<childCodes.length; c++)
+                if((c == 0) || ((childCodes[c] >> 2) != (childCodes[c - 1] >> 2)))
+                    count++;
+            codes = new int[count];
+            reps = new int[count];
+            k = 0;
+            for(int c=0; c<childCodes.length; c++)
+            {
+                if((c == 0) || ((childCodes[c] >> 2) != (childCodes[c - 1] >> 2)))
+                {
+                    codes[k] = childCodes[c] >> 2;
+                    reps[k] = childRows[c];
+                    k++;
+                }
+            }
+            levelCodes[level] = codes;
+            levelRows[level] = reps;
+            total += count;
+        }
+
+        levelStart = new int[MAX_LEVEL + 2];
+        rows = new int[total];
+        for(int level=0; level<=MAX_LEVEL; level++)
+        {
+            System.arraycopy(levelRows[level], 0, rows, levelStart[level], levelRows[level].length);
+            levelStart[level + 1] = levelStart[level] + levelRows[level].length;
+        }
+    }
+
+    private static boolean isValid(double x, double y)
+    {
+        return !(Double.isNaN(x) || Double.isNaN(y) || Double.isInfinite(x) || Double.isInfinite(y));
+    }
+
+    /**
+     * Spread the bits of a cell coordinate on the even bits (Morton code)
+     * @param v coordinate, less than 2^16
+     * @return spread bits
+     */
+    private static int spread(int v)
+    {
+        v = (v | (v << 8)) & 0x00ff00ff;
+        v = (v | (v << 4)) & 0x0f0f0f0f;
+        v = (v | (v << 2)) & 0x33333333;
+        v = (v | (v << 1)) & 0x55555555;
+        return v;
+    }
+
+    /**
+     * Choose the level to draw: the coarsest one whose cells are not larger than a pixel
+     * @param pixelWidth pixel width, in points coordinates
+     * @param pixelHeight pixel height, in points coordinates
+     * @return level, or -1 if all points must be drawn
+     */
+    public int getLevel(double pixelWidth, double pixelHeight)
+    {
+        for(int level=0; level<=MAX_LEVEL; level++)
+        {
+            if((width / (1 << level) <= pixelWidth) && (height / (1 << level) <= pixelHeight))
+                return (getLevelSize(level) < MAX_RATIO * points) ? level : -1;
+        }
+        return -1;
+    }
+
+    /**
+     * Get the position of a level in getRows()
+     * @param level
+     * @return index of the first point of the level
+     */
+    public int getLevelStart(int level) { return levelStart[level]; }
+
+    /**
+     * Get the number of points of a level
+     * @param level
+     * @return points count
+     */
+    public int getLevelSize(int level) { return levelStart[level + 1] - levelStart[level]; }
+
+    /**
+     * Get the points indexes of all levels (see getLevelStart)
+     * @return points indexes (not copied)
+     */
+    public int[] getRows() { return rows; }
+}
@@ -0,0 +1,129 @@
+/*
+Copyright © 2008 FONTAINE Julie
+Copyright © 2008 ABATI Mathieu
+
+This file is part of Universe Viewer.
+
+Universe Viewer is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 2 of the License, or
+(at your option) any later version.
+
+Universe Viewer is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Universe Viewer; if not, write to the Free Software
+Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+/**
+ * @author FONTAINE Julie
+ * @author ABATI Mathieu
+ */
+
+/**
+ * Projection of 4d positions on the vectors E1, E2, E3 (pk = pos.Ek), for a range of
+ * quasars stored by columns. All views are computed at once (E0 = (0, 0, 0, 1) needs no
+ * calculation, see QuasarCatalog.getProjColumn).
+ * The kernel using the JDK Vector API (VectorProjection, in the vector directory) is used
+ * when it has been compiled and the jdk.incubator.vector module is available
+ * (java --add-modules jdk.incubator.vector), the scalar loop otherwise.
+ * Both compute exactly the same values (same operations, in the same order).
+ */
+abstract class ProjectionKernel
+{
+    private static final String VECTOR_KERNEL = "VectorProjection";
+    private static ProjectionKernel instance;
+
+    /**
+     * Project quasars from index "from" to "to" (excluded)
+     * @param x positions x components
+     * @param y positions y components
+     * @param z positions z components
+     * @param t positions t components
+     * @param e1 projection vector E1 { x, y, z, t }
+     * @param e2 projection vector E2
+     * @param e3 projection vector E3
+     * @param p1 receives projections on E1
+     * @param p2 receives projections on E2
+     * @param p3 receives projections on E3
+     */
+    abstract void project(double[] x, double[] y, double[] z, double[] t, double[] e1, double[] e2, double[] e3,
+            double[] p1, double[] p2, double[] p3, int from, int to);
+
+    /**
+     * Get the kernel name (shown in logs and benchmarks)
+     * @return name
+     */
+    abstract String getName();
+
+    /**
+     * Get the fastest kernel available
+     * @return projection kernel
+     */
+    static synchronized ProjectionKernel get()
+    {
+        if(instance == null)
+        {
+            if(!Boolean.getBoolean("universeviewer.scalar"))
+                instance = loadVectorKernel();
+            if(instance == null)
+                instance = new Scalar();
+        }
+        return instance;
+    }
+
+    /**
+     * Load the Vector API kernel, if possible
+     * @return kernel, or null if unavailable (not compiled, or module not added)
+     */
+    private static ProjectionKernel loadVectorKernel()
+    {
+        try
+        {
+            ProjectionKernel k = (ProjectionKernel)Class.forName(VECTOR_KERNEL).getDeclaredConstructor().newInstance();
+            // checks the kernel on a few values, vector classes are only linked here
+            double[] v = { 1, 2, 3, 4, 5, 6, 7, 8, 9 };
+            double[] e = { 0.5d, -0.25d, 2, 1 };
+            double[] p1 = new double[v.length], p2 = new double[v.length], p3 = new double[v.length];
+            k.project(v, v, v, v, e, e, e, p1, p2, p3, 0, v.length);
+            if((p1[v.length - 1] != 9 * 3.25d) || (p3[0] != 3.25d))
+                return null;
+            return k;
+        }
+        catch(Exception ex)
+        {
+            return null;
+        }
+        catch(LinkageError ex)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Scalar loop (one quasar at a time)
+     */
+    static final class Scalar extends ProjectionKernel
+    {
+        void project(double[] x, double[] y, double[] z, double[] t, double[] e1, double[] e2, double[] e3,
+                double[] p1, double[] p2, double[] p3, int from, int to)
+        {
+            double e1X = e1[0], e1Y = e1[1], e1Z = e1[2], e1T = e1[3];
+            double e2X = e2[0], e2Y = e2[1], e2Z = e2[2], e2T = e2[3];
+            double e3X = e3[0], e3Y = e3[1], e3Z = e3[2], e3T = e3[3];
+            for(int i=from; i<to; i++)
+            {
+                double xi = x[i], yi = y[i], zi = z[i], ti = t[i];
+                p1[i] = xi*e1X + yi*e1Y + zi*e1Z + ti*e1T;
+                p2[i] = xi*e2X + yi*e2Y + zi*e2Z + ti*e2T;
+                p3[i] = xi*e3X + yi*e3Y + zi*e3Z + ti*e3T;
+            }
+        }
+
+        String getName() { return "scalar"; }
+    }
+}
@@ -25,7 +25,8 @@ Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
  */
 
 /**
- * Quasar class structure, and all its accessors
+ * Quasar class structure, and all its accessors.
+ * A Quasar is a view over one row of a QuasarCatalog: its values are stored in the catalog columns.
  */
 public class Quasar
 {
@@ -33,21 +34,20 @@ public class Quasar
     private static int selectedCount = 0;   // number of selected quasars
     private static boolean multipleSelection = true;    // true if multiple selection is enabled, false if combo selection is enabled
     
-    // quasar caracteristics
-    private double	ascension;
-    private double	declination;
-    private double	redshift;
-    private double	angular_distance;
-    private double	magnitude;
+    // catalog row viewed by this quasar
+    private final QuasarCatalog catalog;
+    private final int index;
     
-    // quasar position
-    Vect4d pos;
-    
-    // quasar projection
-    double x, y;
-    
-    // true if this quasar selected in viewer canvas
-    boolean selected = false;
+    /**
+     * Create a view over the row i of a catalog
+     * @param c catalog
+     * @param i quasar index in catalog
+     */
+    Quasar(QuasarCatalog c, int i)
+    {
+        catalog = c;
+        index = i;
+    }
 
     // -----------------------
     // QUASAR COMMON ACCESSORS
@@ -59,41 +59,71 @@ public class Quasar
     public static boolean isMultipleSelectionEnabled() { return multipleSelection; }
     public static void setMultipleSelection(boolean s) { multipleSelection = s; }
     
+    public QuasarCatalog getCatalog() { return catalog; }
+    public int getIndex() { return index; }
+    
     // --------------------------------
     // QUASAR CARACTERISTICS ACCESSORS
     // --------------------------------
     
-    public double getAscension() { return ascension; }
-    public void setAscension(double ascension) { this.ascension = ascension; }
+    public double getAscension() { return catalog.getAscensionColumn()[index]; }
+    public void setAscension(double ascension) { catalog.setAscension(index, ascension); }
 
-    public double getDeclination() { return declination; }
-    public void setDeclination(double declination) { this.declination = declination; }
+    public double getDeclination() { return catalog.getDeclinationColumn()[index]; }
+    public void setDeclination(double declination) { catalog.setDeclination(index, declination); }
 
-    public double getRedshift() { return redshift; }
-    public void setRedshift(double redshift) { this.redshift = redshift; }
+    public double getRedshift() { return catalog.getRedshiftColumn()[index]; }
+    public void setRedshift(double redshift) { catalog.setRedshift(index, redshift); }
 
-    public double getAngularDist() { return angular_distance; }
-    public void setAngularDist(double ad) { this.angular_distance = ad; }
+    public double getAngularDist() { return catalog.getAngularDistColumn()[index]; }
+    public void setAngularDist(double ad) { catalog.getAngularDistColumn()[index] = ad; }
 
-    public double getMagnitude() { return magnitude; }
-    public void setMagnitude(double magnitude) { this.magnitude = magnitude; }
+    public double getMagnitude() { return catalog.getMagnitudeColumn()[index]; }
+    public void setMagnitude(double magnitude) { catalog.getMagnitudeColumn()[index] = magnitude; }
 
     // ----------------------------------------
     // QUASAR POSITION AND PROJECTION ACCESSORS
     // ----------------------------------------
     
-    public Vect4d getPos() { return pos; }
-    public void setPos(Vect4d v) { pos = v; }
+    /**
+     * Get quasar position
+     * @return a new 4d vector, copied from the catalog
+     */
+    public Vect4d getPos()
+    {
+        return getPos(new Vect4d());
+    }
+    /**
+     * Get quasar position into a given vector
+     * @param v receives the position
+     * @return v
+     */
+    public Vect4d getPos(Vect4d v)
+    {
+        return v.set(catalog.getPosXColumn()[index], catalog.getPosYColumn()[index],
+                catalog.getPosZColumn()[index], catalog.getPosTColumn()[index]);
+    }
+    /**
+     * Set quasar position
+     * @param v position, copied into the catalog
+     */
+    public void setPos(Vect4d v)
+    {
+        catalog.getPosXColumn()[index] = v.getX();
+        catalog.getPosYColumn()[index] = v.getY();
+        catalog.getPosZColumn()[index] = v.getZ();
+        catalog.getPosTColumn()[index] = v.getT();
+    }
     
-    public double getx() { return x; }
-    public double gety() { return y; }
-    public void setx(double x) { this.x = x; }
-    public void sety(double y) { this.y = y; }
+    public double getx() { return catalog.getProjXColumn()[index]; }
+    public double gety() { return catalog.getProjYColumn()[index]; }
+    public void setx(double x) { catalog.getProjXColumn()[index] = x; }
+    public void sety(double y) { catalog.getProjYColumn()[index] = y; }
     
     // --------------
     // MISC ACCESSORS
     // --------------
     
-    public boolean isSelected() { return selected; }
-    public void setSelected(boolean s) { selected = s; }
+    public boolean isSelected() { return catalog.isSelected(index); }
+    public void setSelected(boolean s) { catalog.setSelected(index, s); }
 }
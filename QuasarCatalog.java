@@ -0,0 +1,667 @@
+/*
+Copyright © 2008 FONTAINE Julie
+Copyright © 2008 ABATI Mathieu
+
+This file is part of Universe Viewer.
+
+Universe Viewer is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 2 of the License, or
+(at your option) any later version.
+
+Universe Viewer is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Universe Viewer; if not, write to the Free Software
+Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+/**
+ * @author FONTAINE Julie
+ * @author ABATI Mathieu
+ */
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Quasars catalog, stored as columns: one primitive array per quasar caracteristic.
+ * Row i of every column describes the same quasar, a Quasar object is only a view over one row.
+ */
+final class QuasarCatalog
+{
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    private int size;
+
+    // quasars caracteristics
+    private double[] ascension;
+    private double[] declination;
+    private double[] redshift;
+    private double[] angularDist;
+    private double[] magnitude;
+
+    // quasars unit direction vectors, from ascension and declination (see updateDirections)
+    private double[] dirX;
+    private double[] dirY;
+    private double[] dirZ;
+
+    // quasars positions
+    private double[] posX;
+    private double[] posY;
+    private double[] posZ;
+    private double[] posT;
+
+    // quasars projections on E1, E2, E3 (E0 = (0, 0, 0, 1): the projection on E0 is posT itself).
+    // All views are computed at once: a view uses two of these projections (see setProjectionAxes)
+    private double[] proj1;
+    private double[] proj2;
+    private double[] proj3;
+    private int axisX;
+    private int axisY;
+    private long projectionStamp;   // changes each time projections are computed again
+    private int projectionRotations;    // Beta rotations applied since projections were computed
+    private boolean projectionsShared;  // arrays shared with another catalog (see workingCopy)
+
+    private static final AtomicLong stamps = new AtomicLong();
+
+    // selected quasars (bit i set if quasar i is selected in viewer canvas)
+    private BitSet selected;
+    private AtomicLong selectionStamp;  // changes with the selection (both are shared with working copies)
+
+    // quasars indexes and redshifts, sorted by redshift (computed once when needed, and shared
+    // with working copies: redshifts never change once loaded)
+    private static final class RedshiftSort
+    {
+        int[] order;
+        double[] sorted;
+    }
+    private RedshiftSort redshiftSort = new RedshiftSort();
+
+    // spatial indexes over projections and over (ascension, declination) (null until needed)
+    private SpatialGrid projIndex;
+    private SpatialGrid skyIndex;
+
+    // points pyramids over projections and over (ascension, declination), used to draw huge catalogs (null until needed)
+    private PointPyramid projPyramid;
+    private PointPyramid skyPyramid;
+
+    // density maps over projections and over (ascension, declination), shown by the density mode (null until needed)
+    private DensityMap projDensity;
+    private DensityMap skyDensity;
+
+    // snapshots used by the last calculation (null if never computed)
+    private volatile CosmologySnapshot computedCosmology;
+    private volatile ViewSnapshot computedView;
+
+    /**
+     * Create an empty catalog
+     */
+    public QuasarCatalog()
+    {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Create an empty catalog, pre-sized for capacity quasars
+     * @param capacity
+     */
+    public QuasarCatalog(int capacity)
+    {
+        if(capacity < 1)
+            capacity = 1;
+        size = 0;
+        ascension = new double[capacity];
+        declination = new double[capacity];
+        redshift = new double[capacity];
+        angularDist = new double[capacity];
+        magnitude = new double[capacity];
+        dirX = new double[capacity];
+        dirY = new double[capacity];
+        dirZ = new double[capacity];
+        posX = new double[capacity];
+        posY = new double[capacity];
+        posZ = new double[capacity];
+        posT = new double[capacity];
+        proj1 = new double[capacity];
+        proj2 = new double[capacity];
+        proj3 = new double[capacity];
+        axisX = 0;
+        axisY = 1;
+        projectionStamp = stamps.incrementAndGet();
+        selected = new BitSet(capacity);
+        selectionStamp = new AtomicLong();
+    }
+
+
+    // ----------
+    // ROWS ACCESS
+    // ----------
+
+    /**
+     * Get the number of quasars in this catalog
+     * @return quasars count
+     */
+    public int size() { return size; }
+
+    /**
+     * Get a view over the quasar i
+     * @param i quasar index
+     * @return quasar view
+     */
+    public Quasar get(int i)
+    {
+        if((i < 0) || (i >= size))
+            throw new IndexOutOfBoundsException("Quasar index: " + i + ", catalog size: " + size);
+        return new Quasar(this, i);
+    }
+
+    /**
+     * Add a quasar at the end of the catalog
+     * @param ra ascension
+     * @param dec declination
+     * @param z redshift
+     * @return new quasar index
+     */
+    public int add(double ra, double dec, double z)
+    {
+        if(size == ascension.length)
+            grow(size + (size >> 1) + 1);
+        ascension[size] = ra;
+        declination[size] = dec;
+        redshift[size] = z;
+        updateDirections(size, size + 1);
+        forgetRedshiftSort();
+        projIndex = null;
+        projPyramid = null;
+        projDensity = null;
+        skyIndex = null;
+        skyPyramid = null;
+        skyDensity = null;
+        return size++;
+    }
+
+    /**
+     * Set the number of quasars of the catalog. New quasars are filled with zeros,
+     * their values are then written directly in the columns (then call updateDirections).
+     * @param newSize quasars count
+     */
+    public void resize(int newSize)
+    {
+        if(newSize > ascension.length)
+            grow(Math.max(newSize, size + (size >> 1) + 1));
+        if(newSize < size)  // forgetting removed quasars
+        {
+            selected.clear(newSize, size);
+            selectionStamp.incrementAndGet();
+        }
+        size = newSize;
+        forgetRedshiftSort();
+        projIndex = null;
+        projPyramid = null;
+        projDensity = null;
+        skyIndex = null;
+        skyPyramid = null;
+        skyDensity = null;
+    }
+
+    /**
+     * Create a catalog sharing this catalog quasars (caracteristics, redshift order and
+     * selection), with its own arrays for the computed values. It is used to compute new
+     * values while this catalog is still shown.
+     * @param positions new arrays for angular distances and positions
+     * @param projections new arrays for projections (else they are shared, only the view may change)
+     * @return working catalog
+     */
+    public synchronized QuasarCatalog workingCopy(boolean positions, boolean projections)
+    {
+        QuasarCatalog c = new QuasarCatalog(this);
+        if(positions)
+        {
+            c.angularDist = new double[size];
+            c.posX = new double[size];
+            c.posY = new double[size];
+            c.posZ = new double[size];
+            c.posT = new double[size];
+        }
+        if(projections)
+        {
+            c.proj1 = new double[size];
+            c.proj2 = new double[size];
+            c.proj3 = new double[size];
+            c.projectionsShared = false;
+        }
+        else
+        {
+            projectionsShared = true;
+            c.projectionsShared = true;
+        }
+        return c;
+    }
+
+    private QuasarCatalog(QuasarCatalog q)
+    {
+        size = q.size;
+        ascension = q.ascension;
+        declination = q.declination;
+        redshift = q.redshift;
+        magnitude = q.magnitude;
+        dirX = q.dirX;
+        dirY = q.dirY;
+        dirZ = q.dirZ;
+        angularDist = q.angularDist;
+        posX = q.posX;
+        posY = q.posY;
+        posZ = q.posZ;
+        posT = q.posT;
+        proj1 = q.proj1;
+        proj2 = q.proj2;
+        proj3 = q.proj3;
+        axisX = q.axisX;
+        axisY = q.axisY;
+        projectionStamp = q.projectionStamp;
+        projectionRotations = q.projectionRotations;
+        projectionsShared = q.projectionsShared;
+        selected = q.selected;
+        selectionStamp = q.selectionStamp;
+        redshiftSort = q.redshiftSort;
+        skyIndex = q.skyIndex;
+        skyPyramid = q.skyPyramid;
+        skyDensity = q.skyDensity;
+        computedCosmology = q.computedCosmology;
+        computedView = q.computedView;
+    }
+
+    /**
+     * Release unused capacity, once the catalog is fully loaded
+     */
+    public void trimToSize()
+    {
+        if(size < ascension.length)
+            grow(size);
+    }
+
+    private void grow(int capacity)
+    {
+        if(capacity < 1)
+            capacity = 1;
+        ascension = Arrays.copyOf(ascension, capacity);
+        declination = Arrays.copyOf(declination, capacity);
+        redshift = Arrays.copyOf(redshift, capacity);
+        angularDist = Arrays.copyOf(angularDist, capacity);
+        magnitude = Arrays.copyOf(magnitude, capacity);
+        dirX = Arrays.copyOf(dirX, capacity);
+        dirY = Arrays.copyOf(dirY, capacity);
+        dirZ = Arrays.copyOf(dirZ, capacity);
+        posX = Arrays.copyOf(posX, capacity);
+        posY = Arrays.copyOf(posY, capacity);
+        posZ = Arrays.copyOf(posZ, capacity);
+        posT = Arrays.copyOf(posT, capacity);
+        proj1 = Arrays.copyOf(proj1, capacity);
+        proj2 = Arrays.copyOf(proj2, capacity);
+        proj3 = Arrays.copyOf(proj3, capacity);
+        projIndex = null;
+        projPyramid = null;
+        projDensity = null;
+        skyIndex = null;
+        skyPyramid = null;
+        skyDensity = null;
+    }
+
+
+    // -------------
+    // COLUMNS ACCESS
+    // -------------
+    // Arrays may be longer than size(), only the first size() values are meaningful.
+    // They are replaced when the catalog grows, so do not keep them while adding quasars.
+
+    public double[] getAscensionColumn() { return ascension; }
+    public double[] getDeclinationColumn() { return declination; }
+    public double[] getRedshiftColumn() { return redshift; }
+    public double[] getAngularDistColumn() { return angularDist; }
+    public double[] getMagnitudeColumn() { return magnitude; }
+
+    public double[] getDirXColumn() { return dirX; }
+    public double[] getDirYColumn() { return dirY; }
+    public double[] getDirZColumn() { return dirZ; }
+
+    public double[] getPosXColumn() { return posX; }
+    public double[] getPosYColumn() { return posY; }
+    public double[] getPosZColumn() { return posZ; }
+    public double[] getPosTColumn() { return posT; }
+
+    /**
+     * Get the projections on a projection vector
+     * @param k vector index (0 to 3 for E0 to E3)
+     * @return projections column
+     */
+    public double[] getProjColumn(int k)
+    {
+        switch(k)
+        {
+            case 0: return posT;
+            case 1: return proj1;
+            case 2: return proj2;
+            default: return proj3;
+        }
+    }
+
+    // projections shown on the X and Y axis by the current view
+    public double[] getProjXColumn() { return getProjColumn(axisX); }
+    public double[] getProjYColumn() { return getProjColumn(axisY); }
+    public int getProjectionAxisX() { return axisX; }
+    public int getProjectionAxisY() { return axisY; }
+
+    /**
+     * Choose the projections shown by the view (nothing is computed)
+     * @param x projection vector index used for the X axis (see ViewSnapshot.getAxisX)
+     * @param y projection vector index used for the Y axis (see ViewSnapshot.getAxisY)
+     */
+    public synchronized void setProjectionAxes(int x, int y)
+    {
+        if((x != axisX) || (y != axisY))
+        {
+            axisX = x;
+            axisY = y;
+            projIndex = null;
+            projPyramid = null;
+            projDensity = null;
+        }
+    }
+
+    /**
+     * Get the number of Beta rotations applied to the projections since they were computed
+     * @return rotations count
+     */
+    public int getProjectionRotations() { return projectionRotations; }
+
+    /**
+     * Set the number of Beta rotations applied to the projections (0 once they are computed)
+     * @param n rotations count
+     */
+    public void setProjectionRotations(int n) { projectionRotations = n; }
+
+    /**
+     * Are projections arrays shared with another catalog? (see workingCopy)
+     * If so, they must not be modified: another catalog may be shown.
+     * @return true if shared
+     */
+    public synchronized boolean areProjectionsShared() { return projectionsShared; }
+
+    /**
+     * Install projections on E2 and E3 rotated from the current ones (see ComputeEngine.STAGE_ROTATE)
+     * @param p2 projections on E2 (new array, or the current one rotated in place)
+     * @param p3 projections on E3
+     */
+    public synchronized void setRotatedProjections(double[] p2, double[] p3)
+    {
+        if((p2 != proj2) && (p3 != proj3))
+            projectionsShared = false;  // projections on E1 may still be shared, but they are never rotated
+        proj2 = p2;
+        proj3 = p3;
+        projectionRotations++;
+    }
+
+    /**
+     * Get the projections stamp: it changes each time projections are computed
+     * (two catalogs sharing their projections have the same stamp)
+     * @return stamp
+     */
+    public long getProjectionStamp() { return projectionStamp; }
+
+
+    /**
+     * Set the redshift of quasar i
+     * @param i quasar index
+     * @param z redshift
+     */
+    public void setRedshift(int i, double z)
+    {
+        redshift[i] = z;
+        forgetRedshiftSort();
+    }
+
+    /**
+     * Get quasars indexes sorted by increasing redshift, computed once for the catalog
+     * @return quasars indexes
+     */
+    public int[] getRedshiftOrder() { return sortByRedshift().order; }
+
+    /**
+     * Get quasars redshifts sorted in increasing order (same order as getRedshiftOrder)
+     * @return sorted redshifts
+     */
+    public double[] getSortedRedshift() { return sortByRedshift().sorted; }
+
+    /**
+     * Set the ascension of quasar i
+     * @param i quasar index
+     * @param ra ascension
+     */
+    public synchronized void setAscension(int i, double ra)
+    {
+        ascension[i] = ra;
+        updateDirections(i, i + 1);
+        skyIndex = null;
+        skyPyramid = null;
+        skyDensity = null;
+    }
+
+    /**
+     * Set the declination of quasar i
+     * @param i quasar index
+     * @param dec declination
+     */
+    public synchronized void setDeclination(int i, double dec)
+    {
+        declination[i] = dec;
+        updateDirections(i, i + 1);
+        skyIndex = null;
+        skyPyramid = null;
+        skyDensity = null;
+    }
+
+    /**
+     * Get a spatial index over quasars projections, built once after each projection calculation
+     * @return projections index
+     */
+    public synchronized SpatialGrid getProjectionIndex()
+    {
+        if(projIndex == null)
+            projIndex = new SpatialGrid(getProjXColumn(), getProjYColumn(), size);
+        return projIndex;
+    }
+
+    /**
+     * Get a points pyramid over quasars projections (shown by the current view),
+     * built once after each projection calculation
+     * @return projections pyramid
+     */
+    public synchronized PointPyramid getProjectionPyramid()
+    {
+        if(projPyramid == null)
+            projPyramid = new PointPyramid(getProjXColumn(), getProjYColumn(), size);
+        return projPyramid;
+    }
+
+    /**
+     * Get a points pyramid over quasars ascensions and declinations, built once for the catalog
+     * @return sky pyramid
+     */
+    public synchronized PointPyramid getSkyPyramid()
+    {
+        if(skyPyramid == null)
+            skyPyramid = new PointPyramid(ascension, declination, size);
+        return skyPyramid;
+    }
+
+    /**
+     * Get a density map of quasars projections (shown by the current view),
+     * binned once after each projection calculation
+     * @param cells cells per axis
+     * @return projections density map
+     */
+    public synchronized DensityMap getProjectionDensity(int cells)
+    {
+        if((projDensity == null) || (projDensity.getSize() != cells))
+            projDensity = new DensityMap(getProjXColumn(), getProjYColumn(), size, cells);
+        return projDensity;
+    }
+
+    /**
+     * Get a density map of quasars ascensions and declinations, binned once for the catalog
+     * @param cells cells per axis
+     * @return sky density map
+     */
+    public synchronized DensityMap getSkyDensity(int cells)
+    {
+        if((skyDensity == null) || (skyDensity.getSize() != cells))
+            skyDensity = new DensityMap(ascension, declination, size, cells);
+        return skyDensity;
+    }
+
+    /**
+     * Remember the snapshots used to compute this catalog values
+     * @param c cosmology snapshot
+     * @param v view snapshot
+     */
+    public void setComputedWith(CosmologySnapshot c, ViewSnapshot v)
+    {
+        computedCosmology = c;
+        computedView = v;
+    }
+
+    /**
+     * Get the cosmology used to compute this catalog values
+     * @return cosmology snapshot (null if never computed)
+     */
+    public CosmologySnapshot getComputedCosmology() { return computedCosmology; }
+
+    /**
+     * Get the view used to compute this catalog projections
+     * @return view snapshot (null if never computed)
+     */
+    public ViewSnapshot getComputedView() { return computedView; }
+
+    /**
+     * Projections have been computed again: forget the projections index, and change the projections stamp
+     */
+    public synchronized void invalidateProjectionIndex()
+    {
+        projIndex = null;
+        projPyramid = null;
+        projDensity = null;
+        projectionStamp = stamps.incrementAndGet();
+    }
+
+    /**
+     * Get a spatial index over quasars ascensions and declinations, built once for the catalog
+     * @return sky index
+     */
+    public synchronized SpatialGrid getSkyIndex()
+    {
+        if(skyIndex == null)
+            skyIndex = new SpatialGrid(ascension, declination, size);
+        return skyIndex;
+    }
+
+    /**
+     * Compute unit direction vectors of quasars, from their ascension and declination:
+     * (cos(ra).cos(dec), sin(ra).cos(dec), sin(dec)). They do not depend on the cosmology,
+     * so positions calculations only multiply them by the radial distance.
+     * Called once quasars from "from" to "to" (excluded) have been written in the columns;
+     * several threads may update distinct ranges.
+     * @param from first quasar
+     * @param to last quasar (excluded)
+     */
+    public void updateDirections(int from, int to)
+    {
+        for(int i=from; i<to; i++)
+        {
+            double cosDec = Math.cos(declination[i]);
+            dirX[i] = Math.cos(ascension[i]) * cosDec;
+            dirY[i] = Math.sin(ascension[i]) * cosDec;
+            dirZ[i] = Math.sin(declination[i]);
+        }
+    }
+
+    private void forgetRedshiftSort()
+    {
+        // working copies keep the order of their redshifts
+        if(redshiftSort.order != null)
+            redshiftSort = new RedshiftSort();
+    }
+
+    private RedshiftSort sortByRedshift()
+    {
+        RedshiftSort s = redshiftSort;
+        synchronized(s)
+        {
+            if(s.order != null)
+                return s;
+            // sort key: float redshift in the high bits (as an ordered int), index in the low bits
+            long[] keys = new long[size];
+            for(int i=0; i<size; i++)
+            {
+                int bits = Float.floatToIntBits((float)redshift[i]);
+                bits ^= (bits >> 31) & 0x7fffffff;
+                keys[i] = ((long)bits << 32) | i;
+            }
+            Arrays.sort(keys);
+            int[] order = new int[size];
+            double[] sorted = new double[size];
+            for(int k=0; k<size; k++)
+            {
+                order[k] = (int)keys[k];
+                sorted[k] = redshift[order[k]];
+            }
+            s.order = order;
+            s.sorted = sorted;
+            return s;
+        }
+    }
+
+
+    // ---------
+    // SELECTION
+    // ---------
+
+    public boolean isSelected(int i) { return selected.get(i); }
+
+    public void setSelected(int i, boolean s)
+    {
+        selected.set(i, s);
+        selectionStamp.incrementAndGet();
+    }
+
+    /**
+     * Get the selection bitset (bit i set if quasar i is selected).
+     * Call selectionChanged after modifying it.
+     * @return selection
+     */
+    public BitSet getSelection() { return selected; }
+
+    /**
+     * The bitset returned by getSelection has been modified
+     */
+    public void selectionChanged() { selectionStamp.incrementAndGet(); }
+
+    /**
+     * Get the selection stamp: it changes each time the selection is modified
+     * @return stamp
+     */
+    public long getSelectionStamp() { return selectionStamp.get(); }
+
+    /**
+     * Unselect all quasars
+     */
+    public void clearSelection()
+    {
+        selected.clear();
+        selectionStamp.incrementAndGet();
+    }
+}
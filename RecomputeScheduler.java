@@ -0,0 +1,78 @@
+/*
+Copyright © 2008 FONTAINE Julie
+Copyright © 2008 ABATI Mathieu
+
+This file is part of Universe Viewer.
+
+Universe Viewer is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 2 of the License, or
+(at your option) any later version.
+
+Universe Viewer is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Universe Viewer; if not, write to the Free Software
+Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+/**
+ * @author FONTAINE Julie
+ * @author ABATI Mathieu
+ */
+
+import javax.swing.SwingUtilities;
+
+/**
+ * Coalesces update requests from sliders, spinners and menus (latest wins).
+ * Requests received while the Swing event queue is busy are merged into a single
+ * update (UPDATE_ALL if any of them needs it), submitted once the queued events have
+ * been handled. Submitting it abandons the calculation in progress (see TaskExecutor),
+ * so only the newest parameters are ever shown.
+ * All methods must be called from the Swing event thread.
+ */
+final class RecomputeScheduler
+{
+    private static int pending = 0;     // merged flag of the requests not submitted yet, 0 if none
+    private static boolean flushPosted = false;
+
+    private static final Runnable flush = new Runnable()
+    {
+        public void run()
+        {
+            int flag = pending;
+            pending = 0;
+            flushPosted = false;
+            if(flag != 0)
+                TaskExecutor.submit(new TaskExecutor.UpdateTask(flag));
+        }
+    };
+
+    private RecomputeScheduler() {}
+
+    /**
+     * Request an update of the quasars values
+     * @param flag UPDATE_ALL or UPDATE_VIEW
+     */
+    public static void request(int flag)
+    {
+        if((flag == Environment.UPDATE_ALL) || (pending == Environment.UPDATE_ALL))
+            pending = Environment.UPDATE_ALL;
+        else
+            pending = Environment.UPDATE_VIEW;
+        if(!flushPosted)
+        {
+            flushPosted = true;
+            SwingUtilities.invokeLater(flush);
+        }
+    }
+
+    /**
+     * Is an update requested or running?
+     * @return true if the shown values are not up to date
+     */
+    public static boolean isUpdating() { return (pending != 0) || TaskExecutor.isBusy(); }
+}
@@ -27,7 +27,9 @@ Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
 
 import java.io.BufferedWriter;
 import java.io.FileWriter;
+import java.io.IOException;
 import java.io.PrintWriter;
+import java.util.BitSet;
 
 
 final class SaveFile {
@@ -60,4 +62,22 @@ final class SaveFile {
         
     }
     
+    /**
+     * Write quasars in a binary catalog file (see BinaryCatalog)
+     * @param filename
+     * @param q quasars catalog
+     * @param rows quasars to write (all quasars if null)
+     */
+    public static void write_binary_file(String filename, QuasarCatalog q, BitSet rows)
+    {
+        try
+        {
+            BinaryCatalog.write(q, rows, filename, false);
+        }
+        catch(IOException e)
+        {
+            System.out.println("Error while writing binary catalog file! " + e.getMessage());
+        }
+    }
+    
 }
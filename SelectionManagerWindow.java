@@ -138,7 +138,9 @@ public class SelectionManagerWindow extends javax.swing.JFrame {
                 replace = JOptionPane.showConfirmDialog(this, "File already exists! Replace?", "Save", JOptionPane.OK_CANCEL_OPTION);
             
             // writing file
-            if(replace == 0)
+            if((replace == 0) && filename.endsWith(BinaryCatalog.EXTENSION))
+                SaveFile.write_binary_file(filename, Environment.getQuasars(), Environment.getQuasars().getSelection());
+            else if(replace == 0)
             {
                 SaveFile.open(filename);
                 for(int i=0; i<model.getRowCount(); i++)
@@ -150,7 +152,7 @@ public class SelectionManagerWindow extends javax.swing.JFrame {
 
     public void updateTable()
     {
-        Vector<Quasar> q = Environment.getQuasars();
+        QuasarCatalog q = Environment.getQuasars();
         if(q == null)
             return;
         
@@ -165,19 +167,18 @@ public class SelectionManagerWindow extends javax.swing.JFrame {
         else    // some quasars are selected, adding into the table
         {
             SaveMenu.setEnabled(true);
-            for(int i=0; i<q.size(); i++)
+            // only selected quasars are visited
+            for(int i=q.getSelection().nextSetBit(0); i>=0; i=q.getSelection().nextSetBit(i+1))
             {
-                if(q.get(i).isSelected())
-                {
-                    Vector<Object> tmp = new Vector<Object>();
-                    tmp.add(i);
-                    tmp.add(new String(new Double(q.get(i).getAscension()).toString()));
-                    tmp.add(new String(new Double(q.get(i).getDeclination()).toString()));
-                    tmp.add(new String(new Double(q.get(i).getRedshift()).toString()));
-                    tmp.add(new String(new Double(q.get(i).getAngularDist()).toString()));
-                    tmp.add(new String(new Double(q.get(i).getx()).toString() +", "+ new Double(q.get(i).gety()).toString()));
-                    model.addRow(tmp);
-                }
+                Quasar qi = q.get(i);
+                Vector<Object> tmp = new Vector<Object>();
+                tmp.add(i);
+                tmp.add(new String(new Double(qi.getAscension()).toString()));
+                tmp.add(new String(new Double(qi.getDeclination()).toString()));
+                tmp.add(new String(new Double(qi.getRedshift()).toString()));
+                tmp.add(new String(new Double(qi.getAngularDist()).toString()));
+                tmp.add(new String(new Double(qi.getx()).toString() +", "+ new Double(qi.gety()).toString()));
+                model.addRow(tmp);
             }
         }
         
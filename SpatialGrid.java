@@ -0,0 +1,203 @@
+/*
+Copyright © 2008 FONTAINE Julie
+Copyright © 2008 ABATI Mathieu
+
+This file is part of Universe Viewer.
+
+Universe Viewer is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 2 of the License, or
+(at your option) any later version.
+
+Universe Viewer is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Universe Viewer; if not, write to the Free Software
+Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+/**
+ * @author FONTAINE Julie
+ * @author ABATI Mathieu
+ */
+
+import java.util.BitSet;
+
+/**
+ * Uniform grid over 2D points (projected positions, or ascension and declination).
+ * Points indexes are grouped by cell, so a rectangle query only visits the points
+ * of the cells it intersects.
+ */
+final class SpatialGrid
+{
+    private static final int POINTS_PER_CELL = 16;      // average, used to choose the grid size
+    private static final int MAX_CELLS_PER_AXIS = 2048;
+
+    private final double[] xs, ys;  // points coordinates (not copied)
+    private final int cellsX, cellsY;
+    private final double minX, minY;
+    private final double cellWidth, cellHeight;
+    private final int[] cellStart;  // points of cell c are rows[cellStart[c]] .. rows[cellStart[c+1]-1]
+    private final int[] rows;
+
+    /**
+     * Build a grid over n points
+     * @param x points X coordinates
+     * @param y points Y coordinates
+     * @param n points count
+     */
+    public SpatialGrid(double[] x, double[] y, int n)
+    {
+        xs = x;
+        ys = y;
+
+        // bounding box (points with invalid coordinates are ignored)
+        double x0 = Double.POSITIVE_INFINITY, x1 = Double.NEGATIVE_INFINITY;
+        double y0 = Double.POSITIVE_INFINITY, y1 = Double.NEGATIVE_INFINITY;
+        int valid = 0;
+        for(int i=0; i<n; i++)
+        {
+            if(isValid(x[i], y[i]))
+            {
+                x0 = Math.min(x0, x[i]);
+                x1 = Math.max(x1, x[i]);
+                y0 = Math.min(y0, y[i]);
+                y1 = Math.max(y1, y[i]);
+                valid++;
+            }
+        }
+        if(valid == 0)
+        {
+            x0 = x1 = y0 = y1 = 0;
+        }
+
+        int side = (int)Math.ceil(Math.sqrt((double)valid / POINTS_PER_CELL));
+        side = Math.max(1, Math.min(side, MAX_CELLS_PER_AXIS));
+        cellsX = side;
+        cellsY = side;
+        minX = x0;
+        minY = y0;
+        cellWidth = Math.max(x1 - x0, Double.MIN_NORMAL) / cellsX;
+        cellHeight = Math.max(y1 - y0, Double.MIN_NORMAL) / cellsY;
+
+        // counting sort of the points by cell
+        int[] cellOf = new int[n];
+        cellStart = new int[cellsX * cellsY + 1];
+        for(int i=0; i<n; i++)
+        {
+            if(isValid(x[i], y[i]))
+            {
+                cellOf[i] = cellY(y[i]) * cellsX + cellX(x[i]);
+                cellStart[cellOf[i] + 1]++;
+            }
+            else
+                cellOf[i] = -1;
+        }
+        for(int c=0; c<cellsX*cellsY; c++)
+            cellStart[c+1] += cellStart[c];
+        rows = new int[valid];
+        int[] next = new int[cellsX * cellsY];
+        System.arraycopy(cellStart, 0, next, 0, next.length);
+        for(int i=0; i<n; i++)
+            if(cellOf[i] >= 0)
+                rows[next[cellOf[i]]++] = i;
+    }
+
+    private static boolean isValid(double x, double y)
+    {
+        return !(Double.isNaN(x) || Double.isNaN(y) || Double.isInfinite(x) || Double.isInfinite(y));
+    }
+
+    private int cellX(double x)
+    {
+        int c = (int)((x - minX) / cellWidth);
+        return Math.max(0, Math.min(c, cellsX - 1));
+    }
+
+    private int cellY(double y)
+    {
+        int c = (int)((y - minY) / cellHeight);
+        return Math.max(0, Math.min(c, cellsY - 1));
+    }
+
+    /**
+     * Get the number of rows of the grid
+     * @return rows count, an upper bound of getRanges results
+     */
+    public int getGridRows() { return cellsY; }
+
+    /**
+     * Get the points indexes, grouped by cell (cells of a grid row are consecutive)
+     * @return points indexes (must not be modified)
+     */
+    public int[] getRows() { return rows; }
+
+    /**
+     * Find the points of the cells intersecting a rectangle, as ranges of getRows():
+     * cells of a grid row are contiguous, so each grid row gives at most one range
+     * @param x1 rectangle X min
+     * @param x2 rectangle X max
+     * @param y1 rectangle Y min
+     * @param y2 rectangle Y max
+     * @param starts first position in getRows() of each range found
+     * @param counts points count of each range found
+     * @return number of (non empty) ranges found
+     */
+    public int getRanges(double x1, double x2, double y1, double y2, int[] starts, int[] counts)
+    {
+        if((x1 >= x2) || (y1 >= y2) || (x2 < minX) || (x1 > minX + cellsX * cellWidth)
+                || (y2 < minY) || (y1 > minY + cellsY * cellHeight))
+            return 0;
+        int cx1 = cellX(x1), cx2 = cellX(x2);
+        int cy1 = cellY(y1), cy2 = cellY(y2);
+        int found = 0;
+        for(int cy=cy1; cy<=cy2; cy++)
+        {
+            int start = cellStart[cy * cellsX + cx1];
+            int end = cellStart[cy * cellsX + cx2 + 1];
+            if(end > start)
+            {
+                starts[found] = start;
+                counts[found] = end - start;
+                found++;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Find the points strictly inside a rectangle
+     * @param x1 rectangle X min
+     * @param x2 rectangle X max
+     * @param y1 rectangle Y min
+     * @param y2 rectangle Y max
+     * @param out bit i is set for each point i found (other bits are not modified)
+     * @return number of points found
+     */
+    public int query(double x1, double x2, double y1, double y2, BitSet out)
+    {
+        if((x1 >= x2) || (y1 >= y2))
+            return 0;
+        int cx1 = cellX(x1), cx2 = cellX(x2);
+        int cy1 = cellY(y1), cy2 = cellY(y2);
+        int found = 0;
+        for(int cy=cy1; cy<=cy2; cy++)
+        {
+            // cells cx1..cx2 of a grid row are contiguous in rows[]
+            int end = cellStart[cy * cellsX + cx2 + 1];
+            for(int k=cellStart[cy * cellsX + cx1]; k<end; k++)
+            {
+                int i = rows[k];
+                if((xs[i] > x1) && (xs[i] < x2) && (ys[i] > y1) && (ys[i] < y2))
+                {
+                    out.set(i);
+                    found++;
+                }
+            }
+        }
+        return found;
+    }
+}
@@ -0,0 +1,361 @@
+/*
+Copyright © 2008 FONTAINE Julie
+Copyright © 2008 ABATI Mathieu
+
+This file is part of Universe Viewer.
+
+Universe Viewer is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 2 of the License, or
+(at your option) any later version.
+
+Universe Viewer is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Universe Viewer; if not, write to the Free Software
+Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+/**
+ * @author FONTAINE Julie
+ * @author ABATI Mathieu
+ */
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import javax.swing.SwingWorker;
+import javax.swing.Timer;
+
+/**
+ * Runs long tasks (loading a catalog, computing quasars) outside the Swing event thread.
+ * A task computes its results on its own data, and only installs them (in the Swing
+ * event thread) once finished: until then, the viewer keeps showing the previous state.
+ * Submitting a task cancels the running one, unless the running one cannot be replaced by
+ * the new one: the new task then waits for the running one to finish (only the last waiting
+ * task is kept). Progress is shown in the main window.
+ * All methods must be called from the Swing event thread.
+ */
+final class TaskExecutor
+{
+    private static final int PROGRESS_DELAY = 200;  // ms between two progress messages
+
+    /**
+     * A background task
+     */
+    public static abstract class Task
+    {
+        private volatile boolean cancelled;
+
+        /**
+         * Get the task name, shown with its progress
+         * @return name
+         */
+        public abstract String getName();
+
+        /**
+         * Prepare the work, in the Swing event thread, just before run is called
+         */
+        protected void start() {}
+
+        /**
+         * Do the work, outside the Swing event thread. Should stop early if isCancelled().
+         * @throws java.lang.Exception
+         */
+        protected abstract void run() throws Exception;
+
+        /**
+         * Install results, in the Swing event thread (only called if run succeeded and was not cancelled)
+         * @return message shown at the end of the task (null for none)
+         */
+        protected abstract String done();
+
+        /**
+         * Get the task progress
+         * @return progress in [0, 1], or a negative value if unknown
+         */
+        public double getProgress() { return -1; }
+
+        /**
+         * Can this task be cancelled to run another one?
+         * @param next task submitted while this one is running
+         * @return true if this task can be cancelled, false if next must wait for its end
+         */
+        public boolean isReplaceableBy(Task next) { return true; }
+
+        /**
+         * This task replaces another one (cancelled, or waiting and never run):
+         * the work of the replaced task must be done by this one if needed
+         * @param previous replaced task
+         */
+        protected void replace(Task previous) {}
+
+        public void cancel() { cancelled = true; }
+        public boolean isCancelled() { return cancelled; }
+    }
+
+    /**
+     * Load a registry file (text or binary), and compute its quasars
+     */
+    public static class LoadTask extends Task
+    {
+        private final CatalogLoader loader;
+        private QuasarCatalog quasars;
+        private CosmologySnapshot cosmology;
+        private ViewSnapshot view;
+
+        public LoadTask(String filename) { loader = new CatalogLoader(filename); }
+
+        public String getName() { return "Loading"; }
+
+        public double getProgress() { return loader.getProgress(); }
+
+        public boolean isReplaceableBy(Task next) { return next instanceof LoadTask; }
+
+        public void cancel()
+        {
+            super.cancel();
+            loader.cancel();
+        }
+
+        protected void start()
+        {
+            cosmology = Environment.getCosmology();
+            view = Environment.getViewSnapshot();
+        }
+
+        protected void run() throws IOException
+        {
+            quasars = loader.read();
+            ComputeEngine.compute(quasars, ComputeEngine.STAGE_ALL, cosmology, view, this);
+            warmIndexes(quasars, this);
+        }
+
+        protected String done()
+        {
+            loader.show(quasars);
+            return quasars.size() + " quasars loaded (" + loader.getReadInfo() + ")";
+        }
+    }
+
+    /**
+     * Compute quasars of the current catalog again (see Environment.update)
+     */
+    public static class UpdateTask extends Task
+    {
+        private int flag;
+        private QuasarCatalog quasars;  // catalog shown when the task started
+        private QuasarCatalog result;
+        private CosmologySnapshot cosmology;
+        private ViewSnapshot view;
+
+        /**
+         * @param flag UPDATE_ALL or UPDATE_VIEW
+         */
+        public UpdateTask(int flag) { this.flag = flag; }
+
+        public String getName() { return "Computing"; }
+
+        protected void replace(Task previous)
+        {
+            if((previous instanceof UpdateTask) && (((UpdateTask)previous).flag == Environment.UPDATE_ALL))
+                flag = Environment.UPDATE_ALL;
+        }
+
+        protected void start()
+        {
+            quasars = Environment.getQuasars();
+            cosmology = Environment.getCosmology();
+            view = Environment.getViewSnapshot();
+        }
+
+        protected void run()
+        {
+            if(quasars == null)
+                return;
+            int stages = (flag == Environment.UPDATE_ALL) ? ComputeEngine.STAGE_ALL : ComputeEngine.STAGE_PROJ;
+            // arrays of the shown catalog are shared, unless they are computed again
+            int needed = ComputeEngine.neededStages(quasars, stages, view);
+            result = quasars.workingCopy((needed & ComputeEngine.STAGE_POS) != 0, (needed & ComputeEngine.STAGE_PROJ) != 0);
+            ComputeEngine.compute(result, stages, cosmology, view, this);
+            warmIndexes(result, this);
+        }
+
+        protected String done()
+        {
+            // results are dropped if another catalog has been loaded meanwhile
+            if((quasars != null) && (Environment.getQuasars() == quasars))
+                Environment.show(result);
+            return null;
+        }
+    }
+
+    /**
+     * Build the pyramid and the grid drawn for huge catalogs, and the density map if it is shown,
+     * here rather than in the drawing thread
+     * @param quasars computed catalog
+     * @param task running task
+     */
+    private static void warmIndexes(QuasarCatalog quasars, Task task)
+    {
+        if(!task.isCancelled() && (quasars.size() >= ViewerCanvas.CULLING_MIN_POINTS))
+            quasars.getProjectionIndex();
+        if(!task.isCancelled() && (quasars.size() >= PointPyramid.MIN_POINTS))
+            quasars.getProjectionPyramid();
+        ViewerCanvas canvas = Environment.getopenGLViewerCanvas();
+        if(!task.isCancelled() && (canvas != null) && canvas.isDensityMode())
+            quasars.getProjectionDensity(DensityMap.DEFAULT_SIZE);
+    }
+
+    private static Task current;
+    private static Task waiting;
+    private static Timer progressTimer;
+    private static String idleInfo;         // message shown before tasks started
+    private static boolean progressShown;   // has a progress message replaced it?
+
+    private TaskExecutor() {}
+
+    /**
+     * Run a task in background, cancelling the running task if any
+     * @param task
+     */
+    public static void submit(final Task task)
+    {
+        if(waiting != null)
+        {
+            task.replace(waiting);
+            waiting = null;
+        }
+        if((current != null) && !current.isReplaceableBy(task))
+        {
+            waiting = task;
+            return;
+        }
+        if(current != null)
+        {
+            current.cancel();
+            task.replace(current);
+        }
+        else
+        {
+            MainWindow window = Environment.getMainWindow();
+            idleInfo = (window != null) ? window.getInfo() : null;
+        }
+        current = task;
+        startProgress();
+        task.start();
+
+        new SwingWorker<Void, Void>()
+        {
+            protected Void doInBackground() throws Exception
+            {
+                if(!task.isCancelled())
+                    task.run();
+                return null;
+            }
+
+            protected void done()
+            {
+                if(current == task)
+                {
+                    current = null;
+                    stopProgress();
+                }
+                if(!task.isCancelled())
+                    finish(task, this);
+                if(current == null)
+                    progressShown = false;
+                if((current == null) && (waiting != null))
+                {
+                    Task next = waiting;
+                    waiting = null;
+                    submit(next);
+                }
+            }
+        }.execute();
+    }
+
+    private static void finish(Task task, SwingWorker<Void, Void> worker)
+    {
+        try
+        {
+            worker.get();
+            String message = task.done();
+            if(message != null)
+                showInfo(message);
+            else if(progressShown && (current == null) && (idleInfo != null))
+                showInfo(idleInfo);   // fast tasks (a slider moved...) leave the message unchanged
+        }
+        catch(InterruptedException e)
+        {
+            showInfo(task.getName() + " interrupted");
+        }
+        catch(ExecutionException e)
+        {
+            Throwable cause = (e.getCause() != null) ? e.getCause() : e;
+            showInfo(task.getName() + " failed: " + cause.getMessage());
+        }
+    }
+
+    /**
+     * Cancel the running task, its results will never be installed
+     */
+    public static void cancel()
+    {
+        waiting = null;
+        if(current != null)
+        {
+            current.cancel();
+            showInfo(current.getName() + " cancelled");
+            current = null;
+            progressShown = false;
+            stopProgress();
+        }
+    }
+
+    /**
+     * Is a task running?
+     * @return true if a task is running
+     */
+    public static boolean isBusy() { return current != null; }
+
+    private static void showInfo(String message)
+    {
+        MainWindow window = Environment.getMainWindow();
+        if(window != null)
+            window.setInfo(message);
+    }
+
+    private static void startProgress()
+    {
+        if(progressTimer == null)
+        {
+            progressTimer = new Timer(PROGRESS_DELAY, new ActionListener()
+            {
+                public void actionPerformed(ActionEvent e)
+                {
+                    if(current != null)
+                    {
+                        double p = current.getProgress();
+                        if(p >= 0)
+                            showInfo(current.getName() + "... " + (int)(100 * p) + "%");
+                        else
+                            showInfo(current.getName() + "...");
+                        progressShown = true;
+                    }
+                }
+            });
+        }
+        progressTimer.restart();
+    }
+
+    private static void stopProgress()
+    {
+        if(progressTimer != null)
+            progressTimer.stop();
+    }
+}
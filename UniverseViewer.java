@@ -62,11 +62,34 @@ final class UniverseViewer
     }
     
     /**
-     * Main method, initializes Environment, show starting window and main window
+     * Main method, initializes Environment, show starting window and main window.
+     * With "--batch" as first argument, projects a catalog without any window (see BatchProjection).
      * @param args
      */
     public static void main(String[] args)
     {
+        if((args.length > 0) && args[0].equals("--batch"))
+        {
+            String[] batchArgs = new String[args.length - 1];
+            System.arraycopy(args, 1, batchArgs, 0, batchArgs.length);
+            try
+            {
+                BatchProjection.run(batchArgs);
+            }
+            catch(IllegalArgumentException ex)
+            {
+                System.err.println(ex.getMessage());
+                System.err.println(BatchProjection.USAGE);
+                System.exit(1);
+            }
+            catch(Exception ex)
+            {
+                System.err.println(ex.getMessage());
+                System.exit(1);
+            }
+            return;
+        }
+        
         // initializations
         Environment.initEnvironment();
         
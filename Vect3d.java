@@ -72,4 +72,53 @@ public class Vect3d
     {
         return Math.sqrt(x*x+y*y+z*z);
     }
-}
\ No newline at end of file
+
+    // --------------------------------
+    // IN-PLACE OPERATIONS (no allocation)
+    // --------------------------------
+
+    /**
+     * Set all components
+     * @return this vector
+     */
+    public Vect3d set(double x, double y, double z)
+    {
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        return this;
+    }
+
+    /**
+     * Computing vectorial product between this vector and another one, into a given vector
+     * @param v, a 3d vector
+     * @param r, vector receiving the result (may be this vector or v)
+     * @return r
+     */
+    public Vect3d vectProd3d(Vect3d v, Vect3d r)
+    {
+        double rx = y*v.z - z*v.y;
+        double ry = z*v.x - x*v.z;
+        double rz = x*v.y - y*v.x;
+        return r.set(rx, ry, rz);
+    }
+
+    /**
+     * Divide this vector by its norm
+     * @return this vector
+     */
+    public Vect3d normalize()
+    {
+        double n = norm();
+        return set(x/n, y/n, z/n);
+    }
+
+    /**
+     * Set this vector to a linear combination a*u + b*v
+     * @return this vector (may be u or v)
+     */
+    public Vect3d combine(double a, Vect3d u, double b, Vect3d v)
+    {
+        return set(a*u.x+b*v.x, a*u.y+b*v.y, a*u.z+b*v.z);
+    }
+}
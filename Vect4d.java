@@ -57,4 +57,17 @@ public class Vect4d
     {
         return (x*v.getX()+y*v.getY()+z*v.getZ()+t*v.getT());
     }
+
+    /**
+     * Set all components
+     * @return this vector
+     */
+    public Vect4d set(double x, double y, double z, double t)
+    {
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.t = t;
+        return this;
+    }
 }
@@ -0,0 +1,162 @@
+/*
+Copyright © 2008 FONTAINE Julie
+Copyright © 2008 ABATI Mathieu
+
+This file is part of Universe Viewer.
+
+Universe Viewer is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 2 of the License, or
+(at your option) any later version.
+
+Universe Viewer is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Universe Viewer; if not, write to the Free Software
+Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+/**
+ * @author FONTAINE Julie
+ * @author ABATI Mathieu
+ */
+
+/**
+ * Immutable projection state: current view, angles set by user, and the projection
+ * vectors E0, E1, E2, E3 computed from them.
+ * Environment publishes a new snapshot each time a value changes, so calculations and
+ * the viewer canvas always read vectors matching the angles and the view.
+ */
+final class ViewSnapshot
+{
+    private final int view;
+    private final double ra1;   // radians
+    private final double dec1;  // radians
+    private final double beta;  // radians
+
+    // projection vectors, E[k] = { x, y, z, t }
+    private final double[][] e = new double[4][];
+
+    /**
+     * Create a snapshot, and compute its projection vectors
+     * @param view 1 to 6 (not checked, see Environment.setView)
+     * @param ra1 radians
+     * @param dec1 radians
+     * @param beta radians
+     */
+    ViewSnapshot(int view, double ra1, double dec1, double beta)
+    {
+        this.view = view;
+        this.ra1 = ra1;
+        this.dec1 = dec1;
+        this.beta = beta;
+
+        // three vectors only, reused for all the steps
+        Vect3d P1 = new Vect3d().set(Math.cos(ra1)*Math.cos(dec1), Math.sin(ra1)*Math.cos(dec1), Math.sin(dec1));
+        Vect3d eta1 = new Vect3d();
+        Vect3d eta2 = new Vect3d();
+        
+        if(Math.abs(P1.getX() - 1) > 1e-5) // 1e-5 = epsilon = 2PI/(24*60*60) => epsilon = une seconde d'arc
+            eta2.set(1, 0, 0);  // i
+        else //if(Math.abs(P1.getY() - 1) > 1e-5) 
+            eta2.set(0, 1, 0);  // j
+        P1.vectProd3d(eta2, eta1).normalize();
+        P1.vectProd3d(eta1, eta2);
+
+        Vect3d P2 = eta1.combine(Math.cos(beta), eta1, Math.sin(beta), eta2);
+        Vect3d P3 = P1.vectProd3d(P2, eta2);
+        
+        // Projection vectors :
+        e[0] = new double[] { 0.0d, 0.0d, 0.0d, 1.0d };
+        e[1] = new double[] { P1.getX(), P1.getY(), P1.getZ(), 0.0d };
+        e[2] = new double[] { P2.getX(), P2.getY(), P2.getZ(), 0.0d };
+        e[3] = new double[] { P3.getX(), P3.getY(), P3.getZ(), 0.0d };
+    }
+
+    public int getView() { return view; }
+    public double getRa1() { return ra1; }
+    public double getDec1() { return dec1; }
+    public double getBeta() { return beta; }
+
+    // copies with one value changed
+
+    public ViewSnapshot withView(int v) { return new ViewSnapshot(v, ra1, dec1, beta); }
+    public ViewSnapshot withRa1(double r) { return new ViewSnapshot(view, r, dec1, beta); }
+    public ViewSnapshot withDec1(double d) { return new ViewSnapshot(view, ra1, d, beta); }
+    public ViewSnapshot withBeta(double b) { return new ViewSnapshot(view, ra1, dec1, b); }
+
+    /**
+     * Are the projection vectors of another snapshot the same? (only the view may differ)
+     * @param v view snapshot (may be null)
+     * @return true if Ra1, Dec1 and Beta are the same
+     */
+    public boolean hasSameVectors(ViewSnapshot v)
+    {
+        return (v != null) && (v.ra1 == ra1) && (v.dec1 == dec1) && (v.beta == beta);
+    }
+
+    /**
+     * Is E1 the same in another snapshot? (only Beta and the view may differ: E2 and E3
+     * are then rotated in the plane orthogonal to E1, see ComputeEngine.neededStages)
+     * @param v view snapshot (may be null)
+     * @return true if Ra1 and Dec1 are the same
+     */
+    public boolean hasSameAxis(ViewSnapshot v)
+    {
+        return (v != null) && (v.ra1 == ra1) && (v.dec1 == dec1);
+    }
+
+    /**
+     * Get a projection vector component
+     * @param k vector index (0 to 3 for E0 to E3)
+     * @param c component (0 to 3 for x, y, z, t)
+     * @return component value
+     */
+    public double getE(int k, int c) { return e[k][c]; }
+
+    /**
+     * Get a copy of a projection vector
+     * @param k vector index (0 to 3 for E0 to E3)
+     * @return new vector
+     */
+    public Vect4d getProjVect(int k)
+    {
+        Vect4d v = new Vect4d();
+        v.setX(e[k][0]);
+        v.setY(e[k][1]);
+        v.setZ(e[k][2]);
+        v.setT(e[k][3]);
+        return v;
+    }
+
+    /**
+     * Get the index of the projection vector used for the X axis of the view
+     * @return 0, 1 or 2
+     */
+    public int getAxisX()
+    {
+        switch(view)
+        {
+            case 4: case 5: return 1;   // E1 E2, E1 E3
+            case 6: return 2;           // E2 E3
+            default: return 0;          // E0 E1, E0 E2, E0 E3
+        }
+    }
+
+    /**
+     * Get the index of the projection vector used for the Y axis of the view
+     * @return 1, 2 or 3
+     */
+    public int getAxisY()
+    {
+        switch(view)
+        {
+            case 2: case 4: return 2;           // E0 E2, E1 E2
+            case 3: case 5: case 6: return 3;   // E0 E3, E1 E3, E2 E3
+            default: return 1;                  // E0 E1
+        }
+    }
+}
@@ -29,13 +29,17 @@ import java.awt.event.MouseListener;
 import java.awt.event.MouseMotionListener;
 import java.awt.event.MouseWheelEvent;
 import java.awt.event.MouseWheelListener;
-import java.util.Vector;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
 import javax.media.opengl.GL;
 import javax.media.opengl.GLCanvas;
 import javax.media.opengl.GLCapabilities;
 import javax.media.opengl.GLAutoDrawable;
 import javax.media.opengl.GLEventListener;
-import javax.media.opengl.glu.*;
 
 /**
  * Projection renderer class, using OpenGL
@@ -53,7 +57,7 @@ public class ViewerCanvas implements GLEventListener, MouseListener, MouseWheelL
     private int mouseX, mouseY;
     private double xMin, xMax, yMin, yMax;
     private double posX, posY;
-    private boolean zoomChanged;
+    private int viewWidth, viewHeight;  // OpenGL viewport size
     
     // mouse selection
     private double selectX1, selectY1, selectX2, selectY2;
@@ -68,6 +72,44 @@ public class ViewerCanvas implements GLEventListener, MouseListener, MouseWheelL
     // references marks
     private boolean showReferencesMarks;
     
+    // vertex buffer objects, holding quasars positions and colors
+    private static final int VBO_UNIVERSE = 0;  // projections (see PROJECTION_LAYOUT)
+    private static final int VBO_SKY = 1;       // ascension, declination
+    private static final int VBO_COLORS = 2;
+    private static final int VBO_LOD = 3;       // rows of the pyramid levels drawn for huge catalogs
+    private static final int VBO_CULLING = 4;   // rows of the spatial grid, drawn by visible cells
+    private int[] vbo;                          // null until created
+    private QuasarCatalog uploadedCatalog;      // catalog currently in the buffers
+    private double[] uploadedAscension;         // its ascensions column, and size
+    private int uploadedSize;
+    private int uploadedColorsMode;             // mode used for the colors currently in the buffers
+    private long uploadedProjections;           // stamp of the projections in the buffers (see QuasarCatalog)
+    private boolean selectionChanged;
+    private PointPyramid uploadedPyramid;       // pyramid currently in the VBO_LOD buffer
+    private SpatialGrid uploadedGrid;           // grid currently in the VBO_CULLING buffer
+    
+    // when zoomed in, huge catalogs only draw the grid cells intersecting the canvas bounds
+    static final int CULLING_MIN_POINTS = 100000;
+    private static final double CULLING_MAX_RATIO = 0.75;   // culling is skipped if most points are visible
+    private int[] rangeStarts = new int[0];     // visible ranges of the grid rows (see SpatialGrid.getRanges)
+    private int[] rangeCounts = new int[0];
+    
+    // density mode: quasars are shown as a density map texture (see DensityMap), in both modes
+    private volatile boolean densityMode;       // also read by calculation tasks (see TaskExecutor)
+    private int[] densityColors;
+    private int[] texture;                      // null until created
+    private DensityMap uploadedDensity;         // map currently in the texture
+    private int[] uploadedDensityColors;        // and its colour map
+    private ByteBuffer imageStaging;            // used to send the map to OpenGL
+    
+    // projections sent for each quasar: on E3, E0, E1, E2, E3. Any two of them fit in a window of
+    // three consecutive values, drawn as (x, y, z) vertices: a matrix then keeps the two coordinates
+    // shown by the view. Changing the view only changes the window and the matrix, nothing is sent.
+    private static final int[] PROJECTION_LAYOUT = { 3, 0, 1, 2, 3 };
+    private final double[] axesMatrix = new double[16];
+    private FloatBuffer vertexStaging;          // used to send positions to OpenGL
+    private ByteBuffer colorStaging;            // used to send colors to OpenGL
+    
     /**
      * Constructor, initializing OpenGL viewer canvas
      */
@@ -89,13 +131,11 @@ public class ViewerCanvas implements GLEventListener, MouseListener, MouseWheelL
             zoom = 1;
             mouseX = 0;
             mouseY = 0;
-            xMin = -1;
-            yMin = -1;
-            xMax = 1;
-            yMax = 1;
             posX = 0;
             posY = 0;
-            zoomChanged = false;
+            viewWidth = SIZE_X;
+            viewHeight = SIZE_Y;
+            updateBounds();
             
             // selection initialisation
             selecting = false;
@@ -106,6 +146,20 @@ public class ViewerCanvas implements GLEventListener, MouseListener, MouseWheelL
             
             // by default, show references marks
             showReferencesMarks = true;
+            
+            // buffers are created with the first catalog drawn
+            vbo = null;
+            uploadedCatalog = null;
+            uploadedPyramid = null;
+            uploadedGrid = null;
+            uploadedColorsMode = -1;
+            
+            // density mode is off, with heat colours
+            densityMode = false;
+            try { densityColors = DensityMap.getColorMap(DensityMap.HEAT_COLORS); }
+            catch(Exception e) {}
+            texture = null;
+            uploadedDensity = null;
 
             // automatic refresh
             //Animator anim = new Animator(canvas);
@@ -130,21 +184,13 @@ public class ViewerCanvas implements GLEventListener, MouseListener, MouseWheelL
      */
     public void setMode(int m) throws Exception
     {
-        if(m == UNIVERSE_MODE)  // canvas default bounds for universe mode
+        if(m == UNIVERSE_MODE)  // canvas default center for universe mode
         {
-            xMin = -1;
-            yMin = -1;
-            xMax = 1;
-            yMax = 1;
             posX = 0;
             posY = 0;
         }
-        else if(m == SKY_MODE)  // canvas default bounds for sky mode
+        else if(m == SKY_MODE)  // canvas default center for sky mode
         {
-            xMin = 0;
-            yMin = -1;
-            xMax = 2;
-            yMax = 1;
             posX = -1;
             posY = 0;
         }
@@ -153,9 +199,32 @@ public class ViewerCanvas implements GLEventListener, MouseListener, MouseWheelL
         
         // reset zoomAndMove
         zoom = 1;
+        updateBounds();
         mode = m;
     }
     
+    /**
+     * Show quasars as a density map (true) or as points (false), in both modes
+     * @param d
+     */
+    public void setDensityMode(boolean d) { densityMode = d; }
+    
+    /**
+     * Are quasars shown as a density map?
+     * @return true in density mode
+     */
+    public boolean isDensityMode() { return densityMode; }
+    
+    /**
+     * Set density map colours: DensityMap.HEAT_COLORS or DensityMap.GRAY_COLORS
+     * @param map colour map
+     * @throws java.lang.Exception
+     */
+    public void setDensityColors(int map) throws Exception
+    {
+        densityColors = DensityMap.getColorMap(map);
+    }
+    
     /**
      * Used to show or hide references marks
      * @param s
@@ -167,6 +236,17 @@ public class ViewerCanvas implements GLEventListener, MouseListener, MouseWheelL
      */
     public void updateCanvas() { canvas.display(); }
     
+    /**
+     * Send quasars projections again to OpenGL (computed projections are detected
+     * without this call, see QuasarCatalog.getProjectionStamp)
+     */
+    public void invalidateProjection() { uploadedProjections = -1; }
+    
+    /**
+     * Quasars selection has changed, colors will be sent again to OpenGL
+     */
+    public void invalidateSelection() { selectionChanged = true; }
+    
     /**
      * Enable or disable selection mode.
      * If selection is disabled, move mode is enabled.
@@ -241,7 +321,7 @@ public class ViewerCanvas implements GLEventListener, MouseListener, MouseWheelL
             y1 *= (Math.PI / 2.0d);
             y2 *= (Math.PI / 2.0d);
         }
-        else if((Environment.getKappa() < 0) && (Environment.getView() <= 3))
+        else if(isShiftedView(Environment.getQuasars()))
         {
             x1 += 2;
             x2 += 2;
@@ -270,13 +350,13 @@ public class ViewerCanvas implements GLEventListener, MouseListener, MouseWheelL
     {
         if(axis == X_AXIS)
         {
-            double u = (2.0d * (double)mouseX - (double)SIZE_X) / (double)SIZE_X;   // mouse X position to canvas X axis coefficient
+            double u = (2.0d * (double)mouseX - (double)viewWidth) / (double)viewWidth;   // mouse X position to canvas X axis coefficient
             double x0 = (xMax - xMin) / 2 + xMin;   // X axis canvas center
             return x0 + u * (x0 - xMin);    // canvas X position
         }
         else if(axis == Y_AXIS)
         {
-            double v = -(2.0d * (double)mouseY - (double)SIZE_Y) / (double)SIZE_Y;   // mouse Y position to canvas Y axis coefficient
+            double v = -(2.0d * (double)mouseY - (double)viewHeight) / (double)viewHeight;   // mouse Y position to canvas Y axis coefficient
             double y0 = (yMax - yMin) / 2 + yMin;   // Y axis canvas center
             return y0 + v * (y0 - yMin);    // canvas Y position
         }
@@ -285,72 +365,395 @@ public class ViewerCanvas implements GLEventListener, MouseListener, MouseWheelL
     }
     
     /**
-     * Zoom in/out openGL viewer canvas, mouse position is the center of the zoomAndMove
+     * Compute canvas bounds from the current center, zoom and canvas aspect ratio
+     */
+    private void updateBounds()
+    {
+        double aspect = (double)viewWidth / (double)viewHeight;
+        xMin = -posX - aspect / zoom;
+        xMax = -posX + aspect / zoom;
+        yMin = -posY - 1 / zoom;
+        yMax = -posY + 1 / zoom;
+    }
+    
+    /**
+     * Zoom in/out and move openGL viewer canvas: the projection matrix shows the canvas bounds.
+     * Quasars buffers are not modified, so zooming and moving cost the same whatever the catalog size.
      * @param gl
      */
     private void zoomAndMove(GL gl)
     {
-        if(zoom != 1.0d)
+        gl.glMatrixMode(GL.GL_PROJECTION);
+        gl.glLoadIdentity();
+        gl.glOrtho(xMin, xMax, yMin, yMax, -1, 1);
+        gl.glMatrixMode(GL.GL_MODELVIEW);
+    }
+    
+    /**
+     * Are the shown projections moved by -2 on the X axis? (profile views, when kappa < 0)
+     * Values used to compute the shown catalog are checked, not the last values set by user.
+     * @param q shown quasars catalog
+     * @return true if projections are moved
+     */
+    private static boolean isShiftedView(QuasarCatalog q)
+    {
+        CosmologySnapshot c = ((q != null) && (q.getComputedCosmology() != null)) ? q.getComputedCosmology() : Environment.getCosmology();
+        ViewSnapshot v = ((q != null) && (q.getComputedView() != null)) ? q.getComputedView() : Environment.getViewSnapshot();
+        return (c.getKappa() < 0) && (v.getView() <= 3);
+    }
+    
+    /**
+     * Method called by mouseReleased (see mouseReleased method)
+     * @param q quasars catalog
+     * @param index spatial index over the coordinates shown by the canvas
+     * @return number of selected quasars
+     */
+    private int selectQuasars(QuasarCatalog q, SpatialGrid index)
+    {
+        BitSet selection = q.getSelection();
+        if(Quasar.isMultipleSelectionEnabled())    // adding quasars of the zone to the selection
+            index.query(selectX1, selectX2, selectY1, selectY2, selection);
+        else
+        {
+            BitSet inZone = new BitSet(q.size());
+            index.query(selectX1, selectX2, selectY1, selectY2, inZone);
+            if(Quasar.getSelectedCount() != 0)  // selecting only already selected quasars
+                selection.and(inZone);
+            else
+            {
+                selection.clear();
+                selection.or(inZone);
+            }
+        }
+        q.selectionChanged();
+        return selection.cardinality();
+    }
+    
+    /**
+     * Send quasars positions and colors to OpenGL buffers, if they have changed since last upload
+     * @param gl
+     * @param q quasars catalog
+     */
+    private void uploadBuffers(GL gl, QuasarCatalog q)
+    {
+        int n = q.size();
+        
+        if(vbo == null)
         {
-            if(zoomChanged == true)
+            vbo = new int[5];
+            gl.glGenBuffers(5, vbo, 0);
+        }
+        
+        if((q != uploadedCatalog) && (q.getAscensionColumn() == uploadedAscension) && (q.size() == uploadedSize))
+        {
+            // same quasars with new computed values (see QuasarCatalog.workingCopy)
+            uploadedCatalog = q;
+        }
+        if(q != uploadedCatalog)    // new catalog, everything must be sent
+        {
+            vertexStaging = ByteBuffer.allocateDirect(n * PROJECTION_LAYOUT.length * 4).order(ByteOrder.nativeOrder()).asFloatBuffer();
+            colorStaging = ByteBuffer.allocateDirect(n * 3).order(ByteOrder.nativeOrder());
+            
+            // sky positions never change for a catalog
+            double[] ra = q.getAscensionColumn();
+            double[] dec = q.getDeclinationColumn();
+            vertexStaging.clear();
+            for(int i=0; i<n; i++)
             {
-                // mouse position in canvas
-                double x = mouseToCanvasLocation(X_AXIS);
-                double y = mouseToCanvasLocation(Y_AXIS);
-
-                // temporary canvas bounds (the mouse cursor pointed location becomes the center)
-                xMin = x - 1 / zoom;
-                yMin = y - 1 / zoom;
-                xMax = x + 1 / zoom;
-                yMax = y + 1 / zoom;
-                
-                // mouse position in canvas after zoomAndMove (according to temporary xMin, yMin, xMax, yMax values)
-                double x2 = mouseToCanvasLocation(X_AXIS);
-                double y2 = mouseToCanvasLocation(Y_AXIS);
-                
-                // new center, the mouse pointed location hasn't moved (it is the zoomAndMove center !not the canvas center!)
-                posX = -(x - (x2 - x));
-                posY = -(y - (y2 - y));
-                
-                // new canvas bounds
-                xMin = -posX - 1 / zoom;
-                yMin = -posY - 1 / zoom;
-                xMax = -posX + 1 / zoom;
-                yMax = -posY + 1 / zoom;
-                
-                zoomChanged = false;
+                vertexStaging.put((float)ra[i]);
+                vertexStaging.put((float)dec[i]);
             }
+            vertexStaging.flip();
+            gl.glBindBuffer(GL.GL_ARRAY_BUFFER, vbo[VBO_SKY]);
+            gl.glBufferData(GL.GL_ARRAY_BUFFER, n * 2 * 4, vertexStaging, GL.GL_STATIC_DRAW);
             
-            gl.glScalef(zoom, zoom, 1); // zooming
+            uploadedCatalog = q;
+            uploadedAscension = ra;
+            uploadedSize = n;
+            uploadedProjections = -1;
+            selectionChanged = true;
+        }
+        
+        if(q.getProjectionStamp() != uploadedProjections)
+        {
+            double[] p0 = q.getProjColumn(0);
+            double[] p1 = q.getProjColumn(1);
+            double[] p2 = q.getProjColumn(2);
+            double[] p3 = q.getProjColumn(3);
+            vertexStaging.clear();
+            for(int i=0; i<n; i++)
+            {
+                float e3 = (float)p3[i];
+                vertexStaging.put(e3);
+                vertexStaging.put((float)p0[i]);
+                vertexStaging.put((float)p1[i]);
+                vertexStaging.put((float)p2[i]);
+                vertexStaging.put(e3);
+            }
+            vertexStaging.flip();
+            gl.glBindBuffer(GL.GL_ARRAY_BUFFER, vbo[VBO_UNIVERSE]);
+            gl.glBufferData(GL.GL_ARRAY_BUFFER, n * PROJECTION_LAYOUT.length * 4, vertexStaging, GL.GL_DYNAMIC_DRAW);
+            uploadedProjections = q.getProjectionStamp();
+        }
+        
+        if(selectionChanged || (uploadedColorsMode != mode))
+        {
+            // quasar not selected color depends on mode, selected color is white
+            byte r = (byte)255, g, b = (byte)0;
+            if(mode == UNIVERSE_MODE)
+                g = (byte)0;
+            else
+            {
+                r = (byte)251;
+                g = (byte)255;
+            }
+            BitSet selected = q.getSelection();
+            colorStaging.clear();
+            for(int i=0; i<n; i++)
+            {
+                if(selected.get(i))
+                    colorStaging.put((byte)255).put((byte)255).put((byte)255);
+                else
+                    colorStaging.put(r).put(g).put(b);
+            }
+            colorStaging.flip();
+            gl.glBindBuffer(GL.GL_ARRAY_BUFFER, vbo[VBO_COLORS]);
+            gl.glBufferData(GL.GL_ARRAY_BUFFER, n * 3, colorStaging, GL.GL_DYNAMIC_DRAW);
+            uploadedColorsMode = mode;
+            selectionChanged = false;
         }
-        gl.glTranslated(posX, posY, 0); // moving
+        
+        gl.glBindBuffer(GL.GL_ARRAY_BUFFER, 0);
     }
     
     /**
-     * Method called by mouseReleased (see mouseReleased method)
-     * @param q quasars Vector
-     * @param i quasar index in Vector
-     * @return 1 if quasar is selected, else 0
+     * Find the projections window holding the two projections of a view, and set the matrix
+     * keeping them as X and Y (see PROJECTION_LAYOUT)
+     * @param x projection vector index shown on the X axis
+     * @param y projection vector index shown on the Y axis
+     * @return window offset in the quasar projections (in floats)
+     */
+    private int selectAxes(int x, int y)
+    {
+        for(int w=0; w+3<=PROJECTION_LAYOUT.length; w++)
+        {
+            int cx = -1, cy = -1;
+            for(int c=0; c<3; c++)
+            {
+                if(PROJECTION_LAYOUT[w + c] == x)
+                    cx = c;
+                if(PROJECTION_LAYOUT[w + c] == y)
+                    cy = c;
+            }
+            if((cx >= 0) && (cy >= 0))
+            {
+                // column-major matrix: vertex coordinate cx gives X, cy gives Y, Z is dropped
+                Arrays.fill(axesMatrix, 0);
+                axesMatrix[cx * 4] = 1;
+                axesMatrix[cy * 4 + 1] = 1;
+                axesMatrix[15] = 1;
+                return w;
+            }
+        }
+        throw new IllegalArgumentException("No projections " + x + " and " + y);
+    }
+    
+    /**
+     * Draw the quasars, once their arrays are set: huge catalogs are drawn from the pyramid
+     * level matching the pixel size (see PointPyramid), or by visible cells when zoomed in
+     * @param gl
+     * @param q quasars catalog
+     * @param positions VBO_UNIVERSE or VBO_SKY
      */
-    private int selectQuasar(Vector<Quasar> q, int i)
+    private void drawLevel(GL gl, QuasarCatalog q, int positions)
     {
-        // if some quasars are already selected and if multiple selection is disabled
-        if((Quasar.getSelectedCount() != 0) && !Quasar.isMultipleSelectionEnabled())
-            if(q.get(i).isSelected() == true)   // ... selecting only already selected quasars
+        int level = -1;
+        PointPyramid pyramid = null;
+        if(q.size() >= PointPyramid.MIN_POINTS)
+        {
+            // size of a pixel in the quasars coordinates
+            double pixelWidth = (xMax - xMin) / viewWidth;
+            double pixelHeight = (yMax - yMin) / viewHeight;
+            if(positions == VBO_UNIVERSE)
+                pyramid = q.getProjectionPyramid();
+            else
             {
-                q.get(i).setSelected(true);
-                return 1;
+                pyramid = q.getSkyPyramid();
+                pixelWidth *= Math.PI;
+                pixelHeight *= Math.PI / 2;
             }
-            else    // quasar not already selected, not in new selection
+            level = pyramid.getLevel(pixelWidth, pixelHeight);
+        }
+        if(level < 0)
+        {
+            if((q.size() < CULLING_MIN_POINTS) || !drawVisibleCells(gl, q, positions))
+                gl.glDrawArrays(GL.GL_POINTS, 0, q.size());
+            return;
+        }
+        
+        gl.glBindBuffer(GL.GL_ELEMENT_ARRAY_BUFFER, vbo[VBO_LOD]);
+        if(pyramid != uploadedPyramid)
+        {
+            int[] rows = pyramid.getRows();
+            IntBuffer buffer = ByteBuffer.allocateDirect(rows.length * 4).order(ByteOrder.nativeOrder()).asIntBuffer();
+            buffer.put(rows).flip();
+            gl.glBufferData(GL.GL_ELEMENT_ARRAY_BUFFER, rows.length * 4, buffer, GL.GL_STATIC_DRAW);
+            uploadedPyramid = pyramid;
+        }
+        gl.glDrawElements(GL.GL_POINTS, pyramid.getLevelSize(level), GL.GL_UNSIGNED_INT, pyramid.getLevelStart(level) * 4L);
+        gl.glBindBuffer(GL.GL_ELEMENT_ARRAY_BUFFER, 0);
+    }
+    
+    /**
+     * Draw the quasars of the grid cells intersecting the canvas bounds (see SpatialGrid)
+     * @param gl
+     * @param q quasars catalog
+     * @param positions VBO_UNIVERSE or VBO_SKY
+     * @return false if nothing was drawn, because most quasars are visible
+     */
+    private boolean drawVisibleCells(GL gl, QuasarCatalog q, int positions)
+    {
+        // canvas bounds in the quasars coordinates (see display)
+        double x1 = xMin, x2 = xMax, y1 = yMin, y2 = yMax;
+        SpatialGrid grid;
+        if(positions == VBO_UNIVERSE)
+        {
+            grid = q.getProjectionIndex();
+            if(isShiftedView(q))
+            {
+                x1 += 2;
+                x2 += 2;
+            }
+        }
+        else
+        {
+            grid = q.getSkyIndex();
+            x1 *= Math.PI;
+            x2 *= Math.PI;
+            y1 *= Math.PI / 2;
+            y2 *= Math.PI / 2;
+        }
+        
+        if(rangeStarts.length < grid.getGridRows())
+        {
+            rangeStarts = new int[grid.getGridRows()];
+            rangeCounts = new int[grid.getGridRows()];
+        }
+        int ranges = grid.getRanges(x1, x2, y1, y2, rangeStarts, rangeCounts);
+        int visible = 0;
+        for(int r=0; r<ranges; r++)
+            visible += rangeCounts[r];
+        if(visible >= CULLING_MAX_RATIO * q.size())
+            return false;
+        
+        gl.glBindBuffer(GL.GL_ELEMENT_ARRAY_BUFFER, vbo[VBO_CULLING]);
+        if(grid != uploadedGrid)
+        {
+            int[] rows = grid.getRows();
+            IntBuffer buffer = ByteBuffer.allocateDirect(rows.length * 4).order(ByteOrder.nativeOrder()).asIntBuffer();
+            buffer.put(rows).flip();
+            gl.glBufferData(GL.GL_ELEMENT_ARRAY_BUFFER, rows.length * 4, buffer, GL.GL_STATIC_DRAW);
+            uploadedGrid = grid;
+        }
+        for(int r=0; r<ranges; r++)
+            gl.glDrawElements(GL.GL_POINTS, rangeCounts[r], GL.GL_UNSIGNED_INT, rangeStarts[r] * 4L);
+        gl.glBindBuffer(GL.GL_ELEMENT_ARRAY_BUFFER, 0);
+        return true;
+    }
+    
+    /**
+     * Draw the quasars density map as a single textured quad. The map is binned again only
+     * for new projections (see QuasarCatalog.getProjectionDensity), the texture is sent again
+     * when the selection or the colours change.
+     * @param gl
+     * @param positions VBO_UNIVERSE or VBO_SKY
+     */
+    private void drawDensity(GL gl, int positions)
+    {
+        QuasarCatalog q = Environment.getQuasars();
+        if(q == null)
+            return;
+        DensityMap map = (positions == VBO_UNIVERSE) ? q.getProjectionDensity(DensityMap.DEFAULT_SIZE) : q.getSkyDensity(DensityMap.DEFAULT_SIZE);
+        boolean selectionUpdated = map.updateSelection(q.getSelection(), q.getSelectionStamp());
+        
+        if(texture == null)
+        {
+            texture = new int[1];
+            gl.glGenTextures(1, texture, 0);
+        }
+        gl.glBindTexture(GL.GL_TEXTURE_2D, texture[0]);
+        if((map != uploadedDensity) || selectionUpdated || (densityColors != uploadedDensityColors))
+        {
+            int cells = map.getSize();
+            if((imageStaging == null) || (imageStaging.capacity() != cells * cells * 4))
+                imageStaging = ByteBuffer.allocateDirect(cells * cells * 4).order(ByteOrder.nativeOrder());
+            map.fillImage(imageStaging, densityColors);
+            if((uploadedDensity != null) && (uploadedDensity.getSize() == cells))
+                gl.glTexSubImage2D(GL.GL_TEXTURE_2D, 0, 0, 0, cells, cells, GL.GL_RGBA, GL.GL_UNSIGNED_BYTE, imageStaging);
+            else
             {
-                q.get(i).setSelected(false);
-                return 0;
+                gl.glTexParameteri(GL.GL_TEXTURE_2D, GL.GL_TEXTURE_MIN_FILTER, GL.GL_NEAREST);
+                gl.glTexParameteri(GL.GL_TEXTURE_2D, GL.GL_TEXTURE_MAG_FILTER, GL.GL_NEAREST);
+                gl.glTexParameteri(GL.GL_TEXTURE_2D, GL.GL_TEXTURE_WRAP_S, GL.GL_CLAMP_TO_EDGE);
+                gl.glTexParameteri(GL.GL_TEXTURE_2D, GL.GL_TEXTURE_WRAP_T, GL.GL_CLAMP_TO_EDGE);
+                gl.glTexImage2D(GL.GL_TEXTURE_2D, 0, GL.GL_RGBA, cells, cells, 0, GL.GL_RGBA, GL.GL_UNSIGNED_BYTE, imageStaging);
             }
-        else    // no quasars selected, or multiple selection enabled
+            uploadedDensity = map;
+            uploadedDensityColors = densityColors;
+        }
+        
+        // empty cells are transparent, references marks stay visible
+        gl.glEnable(GL.GL_TEXTURE_2D);
+        gl.glEnable(GL.GL_BLEND);
+        gl.glBlendFunc(GL.GL_SRC_ALPHA, GL.GL_ONE_MINUS_SRC_ALPHA);
+        gl.glColor3ub((byte)255, (byte)255, (byte)255);
+        gl.glBegin(GL.GL_QUADS);
+            gl.glTexCoord2d(0, 0);
+            gl.glVertex2d(map.getMinX(), map.getMinY());
+            gl.glTexCoord2d(1, 0);
+            gl.glVertex2d(map.getMaxX(), map.getMinY());
+            gl.glTexCoord2d(1, 1);
+            gl.glVertex2d(map.getMaxX(), map.getMaxY());
+            gl.glTexCoord2d(0, 1);
+            gl.glVertex2d(map.getMinX(), map.getMaxY());
+        gl.glEnd();
+        gl.glDisable(GL.GL_BLEND);
+        gl.glDisable(GL.GL_TEXTURE_2D);
+        gl.glBindTexture(GL.GL_TEXTURE_2D, 0);
+    }
+    
+    /**
+     * Draw all quasars with a single call, from OpenGL buffers
+     * @param gl
+     * @param positions VBO_UNIVERSE or VBO_SKY
+     */
+    private void drawQuasars(GL gl, int positions)
+    {
+        QuasarCatalog q = Environment.getQuasars();
+        if(q == null)
+            return;
+        uploadBuffers(gl, q);
+        
+        gl.glEnableClientState(GL.GL_VERTEX_ARRAY);
+        gl.glEnableClientState(GL.GL_COLOR_ARRAY);
+        gl.glBindBuffer(GL.GL_ARRAY_BUFFER, vbo[positions]);
+        if(positions == VBO_UNIVERSE)
         {
-            q.get(i).setSelected(true);
-            return 1;
+            int window = selectAxes(q.getProjectionAxisX(), q.getProjectionAxisY());
+            gl.glPushMatrix();
+            gl.glMultMatrixd(axesMatrix, 0);
+            gl.glVertexPointer(3, GL.GL_FLOAT, PROJECTION_LAYOUT.length * 4, window * 4);
         }
+        else
+            gl.glVertexPointer(2, GL.GL_FLOAT, 0, 0);
+        gl.glBindBuffer(GL.GL_ARRAY_BUFFER, vbo[VBO_COLORS]);
+        gl.glColorPointer(3, GL.GL_UNSIGNED_BYTE, 0, 0);
+        drawLevel(gl, q, positions);
+        if(positions == VBO_UNIVERSE)
+            gl.glPopMatrix();
+        gl.glBindBuffer(GL.GL_ARRAY_BUFFER, 0);
+        gl.glDisableClientState(GL.GL_COLOR_ARRAY);
+        gl.glDisableClientState(GL.GL_VERTEX_ARRAY);
     }
 
 
@@ -376,7 +779,6 @@ public class ViewerCanvas implements GLEventListener, MouseListener, MouseWheelL
     public void display(GLAutoDrawable drawable)
     {
         GL gl = drawable.getGL();
-        GLU glu = new GLU();
         
         // clear viewer
         gl.glClearColor(0, 0, 0, 0);
@@ -387,12 +789,12 @@ public class ViewerCanvas implements GLEventListener, MouseListener, MouseWheelL
         
         if(Environment.isSomethingToShow())   // something to draw?
         {
-            // zooming and moving, if necessary
+            // zooming and moving (projection matrix)
             zoomAndMove(gl);
             
             if(mode == UNIVERSE_MODE)
             {
-                if((Environment.getKappa() < 0) && (Environment.getView() <= 3))
+                if(isShiftedView(Environment.getQuasars()))
                 {
                     // moving
                     gl.glTranslated(-2.0d, 0, 0);
@@ -404,17 +806,10 @@ public class ViewerCanvas implements GLEventListener, MouseListener, MouseWheelL
                         drawCircle(gl, 0, 0, 1.0d);
                 
                 // drawing quasars
-                gl.glBegin(GL.GL_POINTS);
-                    Vector<Quasar> q = Environment.getQuasars();
-                    for(int i=0; i<q.size(); i++)
-                    {
-                        if(q.get(i).isSelected() == true)
-                            gl.glColor3ub((byte)255, (byte)255, (byte)255); // quasar selected color
-                        else
-                            gl.glColor3ub((byte)255, (byte)0, (byte)0); // quasar not selected color
-                        gl.glVertex2d(q.get(i).getx(), q.get(i).gety());
-                    }
-                gl.glEnd();
+                if(densityMode)
+                    drawDensity(gl, VBO_UNIVERSE);
+                else
+                    drawQuasars(gl, VBO_UNIVERSE);
             }
             else    // SKY_MODE
             {
@@ -435,17 +830,10 @@ public class ViewerCanvas implements GLEventListener, MouseListener, MouseWheelL
                 }
 
                 // drawing quasars
-                gl.glBegin(GL.GL_POINTS);
-                    Vector<Quasar> q = Environment.getQuasars();
-                    for(int i=0; i<q.size(); i++)
-                    {
-                        if(q.get(i).isSelected() == true)
-                            gl.glColor3ub((byte)255, (byte)255, (byte)255);
-                        else
-                            gl.glColor3ub((byte)251, (byte)255, (byte)0);
-                        gl.glVertex2d(q.get(i).getAscension(), q.get(i).getDeclination());
-                    }
-                gl.glEnd();
+                if(densityMode)
+                    drawDensity(gl, VBO_SKY);
+                else
+                    drawQuasars(gl, VBO_SKY);
             }
             
             if(selectionEnabled)
@@ -476,11 +864,22 @@ public class ViewerCanvas implements GLEventListener, MouseListener, MouseWheelL
     {
         if(Environment.isSomethingToShow())
         {
-            // new zoomAndMove value is divided by 100 (slower zoomAndMove), and multiplied by previous zoomAndMove value (regular zoomAndMove speed)
-            zoom += -e.getUnitsToScroll() / 100.0 * zoom; // setting new zoomAndMove value
             mouseX = e.getX();  // get mouse position X
             mouseY = e.getY();  // Y
-            zoomChanged = true;
+            
+            // mouse position in canvas before zooming
+            double x = mouseToCanvasLocation(X_AXIS);
+            double y = mouseToCanvasLocation(Y_AXIS);
+            
+            // new zoomAndMove value is divided by 100 (slower zoomAndMove), and multiplied by previous zoomAndMove value (regular zoomAndMove speed)
+            zoom += -e.getUnitsToScroll() / 100.0 * zoom; // setting new zoomAndMove value
+            updateBounds();
+            
+            // new center, the mouse pointed location hasn't moved (it is the zoomAndMove center !not the canvas center!)
+            posX += mouseToCanvasLocation(X_AXIS) - x;
+            posY += mouseToCanvasLocation(Y_AXIS) - y;
+            updateBounds();
+            
             updateCanvas(); // refresh display
         }
     }
@@ -554,28 +953,17 @@ public class ViewerCanvas implements GLEventListener, MouseListener, MouseWheelL
 
                 // now, selecting quasars
                 int nbSelected = 0;
-                Vector<Quasar> q = Environment.getQuasars();
-                // if quasar is in selected zone
+                QuasarCatalog q = Environment.getQuasars();
                 if(mode == UNIVERSE_MODE)
                 {
                     // corrections
-                    if((Environment.getKappa() < 0) && (Environment.getView() <= 3))
+                    if(isShiftedView(q))
                     {
                         selectX1 += 2;
                         selectX2 += 2;
                     }
                     
-                    for(int i=0; i<q.size(); i++)
-                    {
-                        if((q.get(i).getx() > selectX1) && (q.get(i).getx() < selectX2) && (q.get(i).gety() > selectY1) && (q.get(i).gety() < selectY2))
-                            nbSelected += selectQuasar(q, i);
-                        else    // quasar not in selected zone
-                            if(Quasar.isMultipleSelectionEnabled() == false)    // if multiple selection is disabled
-                                q.get(i).setSelected(false);
-                            else
-                                if(q.get(i).isSelected())
-                                    nbSelected++;
-                    }
+                    nbSelected = selectQuasars(q, q.getProjectionIndex());
                 }
                 else    // SKY_MODE
                 {
@@ -585,19 +973,10 @@ public class ViewerCanvas implements GLEventListener, MouseListener, MouseWheelL
                     selectY1 *= (Math.PI / 2.0d);
                     selectY2 *= (Math.PI / 2.0d);
                     
-                    for(int i=0; i<q.size(); i++)
-                    {
-                        if((q.get(i).getAscension() > selectX1) && (q.get(i).getAscension() < selectX2) && (q.get(i).getDeclination() > selectY1) && (q.get(i).getDeclination() < selectY2))
-                            nbSelected += selectQuasar(q, i);
-                        else    // quasar not in selected zone
-                            if(Quasar.isMultipleSelectionEnabled() == false)    // if multiple selection is disabled
-                                q.get(i).setSelected(false);
-                            else
-                                if(q.get(i).isSelected())
-                                    nbSelected++;
-                    }
+                    nbSelected = selectQuasars(q, q.getSkyIndex());
                 }
                 Quasar.setSelectedCount(nbSelected);
+                invalidateSelection();
                 
                 selecting = false;
                 updateCanvas(); // updating viewer canvas
@@ -631,10 +1010,7 @@ public class ViewerCanvas implements GLEventListener, MouseListener, MouseWheelL
             
             posX += offsetX;
             posY += offsetY;
-            xMin -= offsetX;
-            yMin -= offsetY;
-            xMax -= offsetX;
-            yMax -= offsetY;
+            updateBounds();
             selectX1 = selectX2;
             selectY1 = selectY2;
             updateCanvas(); // updating viewer canvas (to move)
@@ -642,8 +1018,25 @@ public class ViewerCanvas implements GLEventListener, MouseListener, MouseWheelL
     }
     
     
+    /**
+     * Canvas has been resized (called by OpenGL itself)
+     * @param drawable
+     * @param x
+     * @param y
+     * @param width
+     * @param height
+     */
+    public void reshape(GLAutoDrawable drawable, int x, int y, int width, int height)
+    {
+        GL gl = drawable.getGL();
+        
+        viewWidth = Math.max(width, 1);
+        viewHeight = Math.max(height, 1);
+        gl.glViewport(0, 0, viewWidth, viewHeight);
+        updateBounds();     // same center and zoom, bounds follow the aspect ratio
+    }
+    
     // UNUSED
-    public void reshape(GLAutoDrawable drawable, int x, int y, int width, int height) {}
     public void displayChanged(GLAutoDrawable drawable, boolean modeChanged, boolean deviceChanged) { }
     public void mouseEntered(MouseEvent arg0) { }
     public void mouseExited(MouseEvent arg0) { }
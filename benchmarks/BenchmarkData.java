@@ -0,0 +1,101 @@
+/*
+Copyright © 2008 FONTAINE Julie
+Copyright © 2008 ABATI Mathieu
+
+This file is part of Universe Viewer.
+
+Universe Viewer is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 2 of the License, or
+(at your option) any later version.
+
+Universe Viewer is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Universe Viewer; if not, write to the Free Software
+Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+/**
+ * @author FONTAINE Julie
+ * @author ABATI Mathieu
+ */
+
+import java.util.Random;
+
+/**
+ * Synthetic catalogs and cosmologies shared by the benchmarks.
+ * Catalogs are random but reproducible (fixed seed): quasars are uniform on the sky,
+ * with redshifts in [0, 5].
+ */
+final class BenchmarkData
+{
+    private static final long SEED = 42;
+
+    // curvature regimes (cosmological constants verify lambda - kappa + omega + alpha = 1)
+    static final String KAPPA_NEGATIVE = "negative";
+    static final String KAPPA_POSITIVE = "positive";
+    static final String KAPPA_ZERO = "zero";
+
+    private BenchmarkData() {}
+
+    /**
+     * Create a random catalog
+     * @param n number of quasars
+     * @return new catalog
+     */
+    static QuasarCatalog catalog(int n)
+    {
+        Random r = new Random(SEED);
+        QuasarCatalog q = new QuasarCatalog(n);
+        for(int i=0; i<n; i++)
+            q.add(r.nextDouble() * 2 * Math.PI, (r.nextDouble() - 0.5) * Math.PI, r.nextDouble() * 5);
+        return q;
+    }
+
+    /**
+     * Get the cosmological constants of a curvature regime
+     * @param curvature KAPPA_NEGATIVE, KAPPA_POSITIVE or KAPPA_ZERO
+     * @return { lambda, omega, kappa, alpha }
+     */
+    static double[] constants(String curvature)
+    {
+        if(KAPPA_NEGATIVE.equals(curvature))
+            return new double[] { 0.5d, 0.3d, -0.19995d, 0.00005d };
+        if(KAPPA_POSITIVE.equals(curvature))
+            return new double[] { 1.2d, 0.2d, 0.40005d, 0.00005d };
+        if(KAPPA_ZERO.equals(curvature))
+            return new double[] { 0.7d, 0.29995d, 0.0d, 0.00005d };
+        throw new IllegalArgumentException("Unknown curvature: " + curvature);
+    }
+
+    /**
+     * Create a cosmology snapshot (kappa = 0 is only allowed in comoving space)
+     * @param curvature KAPPA_NEGATIVE, KAPPA_POSITIVE or KAPPA_ZERO
+     * @param precision precise integration (as the precision button), else fast
+     * @param distanceMode Environment.DISTANCE_INTEGRAL, DISTANCE_TABLE or DISTANCE_SORTED
+     * @return new snapshot
+     */
+    static CosmologySnapshot cosmology(String curvature, boolean precision, int distanceMode)
+    {
+        double[] c = constants(curvature);
+        return new CosmologySnapshot(c[0], c[1], c[2], c[3], c[2] == 0,
+                precision ? Environment.PRECISE_TOLERANCE : Environment.FAST_TOLERANCE,
+                distanceMode, precision ? Environment.PRECISE_DISTANCE_ERROR : Environment.FAST_DISTANCE_ERROR);
+    }
+
+    /**
+     * Install a curvature regime in Environment (used by Integral and Integral2)
+     * @param curvature KAPPA_NEGATIVE, KAPPA_POSITIVE or KAPPA_ZERO
+     */
+    static void setEnvironment(String curvature) throws Exception
+    {
+        double[] c = constants(curvature);
+        Environment.initCalculations();
+        Environment.comovingSpace(c[2] == 0);
+        Environment.setCosmoConsts(c[0], c[1], c[2], c[3]);
+    }
+}
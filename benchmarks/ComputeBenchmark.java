@@ -0,0 +1,108 @@
+/*
+Copyright © 2008 FONTAINE Julie
+Copyright © 2008 ABATI Mathieu
+
+This file is part of Universe Viewer.
+
+Universe Viewer is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 2 of the License, or
+(at your option) any later version.
+
+Universe Viewer is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Universe Viewer; if not, write to the Free Software
+Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+/**
+ * @author FONTAINE Julie
+ * @author ABATI Mathieu
+ */
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of the quasars calculations stages (see ComputeEngine): angular distances,
+ * 4d positions, and the whole update (angular distances, positions and projections),
+ * for each curvature regime, integration precision and comoving distances mode.
+ * Throughput and latency are reported; run with "-prof gc" for allocation rates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ComputeBenchmark
+{
+    @Param({ "10000", "1000000", "10000000" })
+    public int size;
+
+    @Param({ BenchmarkData.KAPPA_NEGATIVE, BenchmarkData.KAPPA_POSITIVE, BenchmarkData.KAPPA_ZERO })
+    public String curvature;
+
+    @Param({ "false", "true" })
+    public boolean precision;
+
+    @Param({ "integral", "table", "sorted" })
+    public String distanceMode;
+
+    private QuasarCatalog quasars;
+    private CosmologySnapshot cosmology;
+    private ViewSnapshot view;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        int mode;
+        if("integral".equals(distanceMode))
+            mode = Environment.DISTANCE_INTEGRAL;
+        else if("table".equals(distanceMode))
+            mode = Environment.DISTANCE_TABLE;
+        else
+            mode = Environment.DISTANCE_SORTED;
+        quasars = BenchmarkData.catalog(size);
+        cosmology = BenchmarkData.cosmology(curvature, precision, mode);
+        view = new ViewSnapshot(1, 0.86d, 0.35d, 1.31d);
+        // first update: builds the distances table or the redshift order, and the positions read by STAGE_POS
+        ComputeEngine.compute(quasars, ComputeEngine.STAGE_ALL, cosmology, view, null);
+    }
+
+    @Benchmark
+    public QuasarCatalog angularDistances()
+    {
+        ComputeEngine.compute(quasars, ComputeEngine.STAGE_DIST, cosmology, view, null);
+        return quasars;
+    }
+
+    @Benchmark
+    public QuasarCatalog positions()
+    {
+        ComputeEngine.compute(quasars, ComputeEngine.STAGE_POS, cosmology, view, null);
+        return quasars;
+    }
+
+    @Benchmark
+    public QuasarCatalog updateAll()
+    {
+        ComputeEngine.compute(quasars, ComputeEngine.STAGE_ALL, cosmology, view, null);
+        return quasars;
+    }
+}
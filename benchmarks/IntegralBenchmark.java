@@ -0,0 +1,109 @@
+/*
+Copyright © 2008 FONTAINE Julie
+Copyright © 2008 ABATI Mathieu
+
+This file is part of Universe Viewer.
+
+Universe Viewer is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 2 of the License, or
+(at your option) any later version.
+
+Universe Viewer is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Universe Viewer; if not, write to the Free Software
+Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+/**
+ * @author FONTAINE Julie
+ * @author ABATI Mathieu
+ */
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of a single comoving distance, with each integration method: the former
+ * precise (Integral) and fast (Integral2) integrations, the adaptive integration used
+ * by the precise and fast modes, and an interpolation in the distances table.
+ * Redshifts cycle through a fixed set, so that results are not constant folded.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IntegralBenchmark
+{
+    private static final int REDSHIFTS = 1024;
+
+    @Param({ BenchmarkData.KAPPA_NEGATIVE, BenchmarkData.KAPPA_POSITIVE, BenchmarkData.KAPPA_ZERO })
+    public String curvature;
+
+    private final double[] a = new double[REDSHIFTS];  // scale factors 1/(1+z)
+    private int next;
+    private CosmologySnapshot fast;
+    private CosmologySnapshot precise;
+    private ComovingDistTable table;
+
+    @Setup
+    public void setUp() throws Exception
+    {
+        BenchmarkData.setEnvironment(curvature);
+        for(int i=0; i<REDSHIFTS; i++)
+            a[i] = 1.0d / (1.0d + 5.0d * (i + 0.5d) / REDSHIFTS);
+        fast = BenchmarkData.cosmology(curvature, false, Environment.DISTANCE_INTEGRAL);
+        precise = BenchmarkData.cosmology(curvature, true, Environment.DISTANCE_INTEGRAL);
+        table = ComovingDistTable.build(BenchmarkData.cosmology(curvature, false, Environment.DISTANCE_TABLE), 1.0d / 6.0d);
+    }
+
+    private double nextA()
+    {
+        next = (next + 1) & (REDSHIFTS - 1);
+        return a[next];
+    }
+
+    @Benchmark
+    public double integralPrecise() { return Integral.integrate(nextA(), 1.0d, 0.01d); }
+
+    @Benchmark
+    public double integral2Fast() { return Integral2.integrate(nextA(), 1.0d, 6); }
+
+    @Benchmark
+    public double adaptivePrecise() { return precise.getIntegrator().value(nextA(), 1.0d, precise.getIntegrationTolerance()); }
+
+    @Benchmark
+    public double adaptiveFast() { return fast.getIntegrator().value(nextA(), 1.0d, fast.getIntegrationTolerance()); }
+
+    @Benchmark
+    public double tableLookup()
+    {
+        double x = nextA();
+        return table.comovingDist(1.0d / x - 1.0d);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Measurement(iterations = 20)
+    public ComovingDistTable tableBuild()
+    {
+        return ComovingDistTable.build(BenchmarkData.cosmology(curvature, false, Environment.DISTANCE_TABLE), 1.0d / 6.0d);
+    }
+}
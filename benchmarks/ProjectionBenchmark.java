@@ -0,0 +1,105 @@
+/*
+Copyright © 2008 FONTAINE Julie
+Copyright © 2008 ABATI Mathieu
+
+This file is part of Universe Viewer.
+
+Universe Viewer is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 2 of the License, or
+(at your option) any later version.
+
+Universe Viewer is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Universe Viewer; if not, write to the Free Software
+Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+/**
+ * @author FONTAINE Julie
+ * @author ABATI Mathieu
+ */
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of the projection stage (see ComputeEngine), of a view update as done when a
+ * slider moves (projection vectors and projections), and of a switch to one of the six views
+ * (projections are shared by all views, nothing should be computed).
+ * Throughput and latency are reported; run with "-prof gc" for allocation rates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProjectionBenchmark
+{
+    @Param({ "10000", "1000000", "10000000" })
+    public int size;
+
+    @Param({ BenchmarkData.KAPPA_NEGATIVE, BenchmarkData.KAPPA_POSITIVE, BenchmarkData.KAPPA_ZERO })
+    public String curvature;
+
+    @Param({ "1", "2", "3", "4", "5", "6" })
+    public int view;
+
+    private QuasarCatalog quasars;
+    private CosmologySnapshot cosmology;
+    private ViewSnapshot viewSnapshot;
+    private ViewSnapshot otherView;     // next view, with the same projection vectors
+    private boolean switched;
+    private double beta;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        quasars = BenchmarkData.catalog(size);
+        cosmology = BenchmarkData.cosmology(curvature, false, Environment.DISTANCE_TABLE);
+        viewSnapshot = new ViewSnapshot(view, 0.86d, 0.35d, 1.31d);
+        otherView = viewSnapshot.withView(view % 6 + 1);
+        beta = 1.31d;
+        ComputeEngine.compute(quasars, ComputeEngine.STAGE_ALL, cosmology, viewSnapshot, null);
+    }
+
+    @Benchmark
+    public QuasarCatalog projections()
+    {
+        quasars.setComputedWith(cosmology, null);   // projections are computed again, even for the same view
+        ComputeEngine.compute(quasars, ComputeEngine.STAGE_PROJ, cosmology, viewSnapshot, null);
+        return quasars;
+    }
+
+    @Benchmark
+    public QuasarCatalog betaChanged()
+    {
+        beta += 1e-3;
+        ComputeEngine.compute(quasars, ComputeEngine.STAGE_PROJ, cosmology, viewSnapshot.withBeta(beta), null);
+        return quasars;
+    }
+
+    @Benchmark
+    public QuasarCatalog viewSwitch()
+    {
+        switched = !switched;
+        ComputeEngine.compute(quasars, ComputeEngine.STAGE_PROJ, cosmology, switched ? otherView : viewSnapshot, null);
+        return quasars;
+    }
+}
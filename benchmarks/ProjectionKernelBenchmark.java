@@ -0,0 +1,93 @@
+/*
+Copyright © 2008 FONTAINE Julie
+Copyright © 2008 ABATI Mathieu
+
+This file is part of Universe Viewer.
+
+Universe Viewer is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 2 of the License, or
+(at your option) any later version.
+
+Universe Viewer is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Universe Viewer; if not, write to the Free Software
+Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+/**
+ * @author FONTAINE Julie
+ * @author ABATI Mathieu
+ */
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Projection kernels compared on a single thread, over a chunk of positions
+ * (ComputeEngine chunk size): the scalar kernel, and the Vector API kernel
+ * (needs "--add-modules jdk.incubator.vector", see ProjectionKernel).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "--add-modules", "jdk.incubator.vector" })
+public class ProjectionKernelBenchmark
+{
+    @Param({ "4096", "1000000" })
+    public int size;
+
+    private double[] x, y, z, t, p1, p2, p3;
+    private final double[] e1 = { 0.12d, -0.43d, 0.89d, 0.0d };
+    private final double[] e2 = { 0.81d, 0.52d, 0.14d, 0.0d };
+    private final double[] e3 = { -0.57d, 0.73d, 0.37d, 0.0d };
+    private ProjectionKernel scalar;
+    private ProjectionKernel vector;
+
+    @Setup
+    public void setUp() throws Exception
+    {
+        Random r = new Random(42);
+        x = new double[size]; y = new double[size]; z = new double[size]; t = new double[size];
+        p1 = new double[size]; p2 = new double[size]; p3 = new double[size];
+        for(int i=0; i<size; i++)
+        {
+            x[i] = r.nextDouble(); y[i] = r.nextDouble(); z[i] = r.nextDouble(); t[i] = r.nextDouble();
+        }
+        scalar = new ProjectionKernel.Scalar();
+        vector = ProjectionKernel.get();
+        if(vector instanceof ProjectionKernel.Scalar)
+            throw new Exception("Vector API kernel unavailable (vector/VectorProjection.java not compiled?)");
+    }
+
+    @Benchmark
+    public double[] scalarKernel()
+    {
+        scalar.project(x, y, z, t, e1, e2, e3, p1, p2, p3, 0, size);
+        return p1;
+    }
+
+    @Benchmark
+    public double[] vectorKernel()
+    {
+        vector.project(x, y, z, t, e1, e2, e3, p1, p2, p3, 0, size);
+        return p1;
+    }
+}
@@ -0,0 +1,78 @@
+/*
+Copyright © 2008 FONTAINE Julie
+Copyright © 2008 ABATI Mathieu
+
+This file is part of Universe Viewer.
+
+Universe Viewer is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 2 of the License, or
+(at your option) any later version.
+
+Universe Viewer is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Universe Viewer; if not, write to the Free Software
+Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+/**
+ * @author FONTAINE Julie
+ * @author ABATI Mathieu
+ */
+
+/**
+ * Adaptive Gauss-Kronrod integration (see AdaptiveIntegral), on constants for which the
+ * comoving distance integral has a closed form, and against the former trapezoid integral.
+ */
+final class AdaptiveIntegralCheck
+{
+    private AdaptiveIntegralCheck() {}
+
+    static void run() throws Exception
+    {
+        double[] tolerances = { Environment.FAST_TOLERANCE, Environment.PRECISE_TOLERANCE };
+        for(int t=0; t<tolerances.length; t++)
+        {
+            double tol = tolerances[t];
+            for(double a=0.05d; a<1; a+=0.1d)
+            {
+                // poly = 1: integral of 1
+                check(new AdaptiveIntegral(0, 0, 0, 1), a, 1 - a, tol, "alpha = 1");
+                // poly = a: integral of a^-1/2
+                check(new AdaptiveIntegral(0, 1, 0, 0), a, 2 * (1 - Math.sqrt(a)), tol, "omega = 1");
+                // poly = a^4: integral of a^-2
+                check(new AdaptiveIntegral(1, 0, 0, 0), a, 1 / a - 1, tol, "lambda = 1");
+                // poly = 1 - a^2 (kappa = 1, alpha = 1): integral of (1 - a^2)^-1/2, up to 0.9
+                AdaptiveIntegral f = new AdaptiveIntegral(0, 0, 1, 1);
+                Check.near(Math.asin(0.9d) - Math.asin(a * 0.9d), f.value(a * 0.9d, 0.9d, tol), tol, "kappa = 1");
+            }
+        }
+
+        // empty interval
+        AdaptiveIntegral.Result r = new AdaptiveIntegral(0, 0, 0, 1).integrate(0.5d, 0.5d, 1e-6);
+        Check.isTrue((r.getValue() == 0) && (r.getError() == 0), "empty interval");
+
+        // same integrand as the former trapezoid integral (its loop on a double step may
+        // stop one step early, hence the tolerance)
+        Environment.initCalculations();
+        Environment.comovingSpace(false);
+        Environment.setCosmoConsts(1.2d, 0.2d, 0.40005d, 0.00005d);
+        AdaptiveIntegral f = Environment.getIntegrator();
+        for(double z=0.5d; z<=5; z+=0.5d)
+        {
+            double a = 1 / (1 + z);
+            Check.near(Integral.integrate(a, 1, 1e-5), f.value(a, 1, Environment.PRECISE_TOLERANCE), 1e-4, "trapezoid, z = " + z);
+        }
+    }
+
+    private static void check(AdaptiveIntegral f, double a, double expected, double tol, String message) throws Exception
+    {
+        AdaptiveIntegral.Result r = f.integrate(a, 1, tol);
+        Check.near(expected, r.getValue(), tol, message + ", a = " + a);
+        Check.isTrue(r.getError() <= tol, message + ": error estimate " + r.getError() + " above " + tol);
+    }
+}
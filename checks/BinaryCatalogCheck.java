@@ -0,0 +1,136 @@
+/*
+Copyright © 2008 FONTAINE Julie
+Copyright © 2008 ABATI Mathieu
+
+This file is part of Universe Viewer.
+
+Universe Viewer is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 2 of the License, or
+(at your option) any later version.
+
+Universe Viewer is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Universe Viewer; if not, write to the Free Software
+Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+/**
+ * @author FONTAINE Julie
+ * @author ABATI Mathieu
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.BitSet;
+import java.util.Random;
+
+/**
+ * Binary catalog format (see BinaryCatalog): written catalogs are read back unchanged,
+ * and corrupted files are rejected by the checksums.
+ */
+final class BinaryCatalogCheck
+{
+    private static final int QUASARS = 50000;
+
+    private BinaryCatalogCheck() {}
+
+    static void run() throws Exception
+    {
+        Random r = new Random(5);
+        QuasarCatalog q = new QuasarCatalog(QUASARS);
+        for(int i=0; i<QUASARS; i++)
+            q.add(r.nextDouble() * 2 * Math.PI, (r.nextDouble() - 0.5d) * Math.PI, r.nextDouble() * 5);
+        for(int i=0; i<QUASARS; i++)
+            q.getMagnitudeColumn()[i] = 15 + r.nextDouble() * 5;
+
+        File file = File.createTempFile("catalog", BinaryCatalog.EXTENSION);
+        try
+        {
+            // doubles: same values, bit for bit
+            BinaryCatalog.write(q, null, file.getPath(), false);
+            Check.isTrue(BinaryCatalog.isBinaryCatalog(file.getPath()), "magic number");
+            QuasarCatalog read = BinaryCatalog.read(file.getPath(), true);
+            Check.isTrue(read.size() == QUASARS, "quasars count");
+            for(int i=0; i<QUASARS; i++)
+            {
+                Check.isTrue((read.getAscensionColumn()[i] == q.getAscensionColumn()[i])
+                        && (read.getDeclinationColumn()[i] == q.getDeclinationColumn()[i])
+                        && (read.getRedshiftColumn()[i] == q.getRedshiftColumn()[i])
+                        && (read.getMagnitudeColumn()[i] == q.getMagnitudeColumn()[i]), "quasar " + i + " changed");
+                Check.isTrue((read.getDirXColumn()[i] == q.getDirXColumn()[i]) && (read.getDirYColumn()[i] == q.getDirYColumn()[i])
+                        && (read.getDirZColumn()[i] == q.getDirZColumn()[i]), "quasar " + i + " direction");
+            }
+            double max = Double.NEGATIVE_INFINITY;
+            for(int i=0; i<QUASARS; i++)
+                max = Math.max(max, q.getRedshiftColumn()[i]);
+            Check.isTrue(BinaryCatalog.getColumnRange(file.getPath(), BinaryCatalog.COLUMN_REDSHIFT)[1] == max, "redshift range");
+
+            // a value changed in a column: detected by the column checksum only
+            long length = file.length();
+            flip(file, length - 1);
+            BinaryCatalog.read(file.getPath(), false);
+            failure(file, "column checksum");
+            flip(file, length - 1);
+
+            // header changed: always detected
+            flip(file, 17);
+            try
+            {
+                BinaryCatalog.read(file.getPath(), false);
+                throw new Exception("header checksum: no error");
+            }
+            catch(IOException e) {}
+            flip(file, 17);
+
+            // floats, and a subset of the quasars
+            BitSet rows = new BitSet();
+            for(int i=0; i<QUASARS; i+=3)
+                rows.set(i);
+            BinaryCatalog.write(q, rows, file.getPath(), true);
+            read = BinaryCatalog.read(file.getPath(), true);
+            Check.isTrue(read.size() == rows.cardinality(), "subset count");
+            int k = 0;
+            for(int i=rows.nextSetBit(0); i>=0; i=rows.nextSetBit(i+1), k++)
+                Check.isTrue(read.getRedshiftColumn()[k] == (float)q.getRedshiftColumn()[i], "subset quasar " + k);
+        }
+        finally
+        {
+            file.delete();
+        }
+    }
+
+    private static void flip(File file, long position) throws IOException
+    {
+        RandomAccessFile f = new RandomAccessFile(file, "rw");
+        try
+        {
+            f.seek(position);
+            int b = f.read();
+            f.seek(position);
+            f.write(b ^ 0x10);
+        }
+        finally
+        {
+            f.close();
+        }
+    }
+
+    private static void failure(File file, String message) throws Exception
+    {
+        try
+        {
+            BinaryCatalog.read(file.getPath(), true);
+        }
+        catch(IOException e)
+        {
+            return;
+        }
+        throw new Exception(message + ": no error");
+    }
+}
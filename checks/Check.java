@@ -0,0 +1,60 @@
+/*
+Copyright © 2008 FONTAINE Julie
+Copyright © 2008 ABATI Mathieu
+
+This file is part of Universe Viewer.
+
+Universe Viewer is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 2 of the License, or
+(at your option) any later version.
+
+Universe Viewer is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Universe Viewer; if not, write to the Free Software
+Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+/**
+ * @author FONTAINE Julie
+ * @author ABATI Mathieu
+ */
+
+/**
+ * Assertions used by the checks (see RunChecks)
+ */
+final class Check
+{
+    private Check() {}
+
+    /**
+     * Verify a condition
+     * @param condition
+     * @param message failure description
+     * @throws java.lang.Exception if condition is false
+     */
+    static void isTrue(boolean condition, String message) throws Exception
+    {
+        if(!condition)
+            throw new Exception(message);
+    }
+
+    /**
+     * Verify that a value is close to the expected one
+     * @param expected
+     * @param actual
+     * @param tolerance absolute difference allowed
+     * @param message failure description
+     * @throws java.lang.Exception if the difference is larger than tolerance (or NaN)
+     */
+    static void near(double expected, double actual, double tolerance, String message) throws Exception
+    {
+        if(!(Math.abs(expected - actual) <= tolerance))
+            throw new Exception(message + ": expected " + expected + ", found " + actual
+                    + " (tolerance " + tolerance + ")");
+    }
+}
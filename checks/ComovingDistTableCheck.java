@@ -0,0 +1,86 @@
+/*
+Copyright © 2008 FONTAINE Julie
+Copyright © 2008 ABATI Mathieu
+
+This file is part of Universe Viewer.
+
+Universe Viewer is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 2 of the License, or
+(at your option) any later version.
+
+Universe Viewer is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Universe Viewer; if not, write to the Free Software
+Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+/**
+ * @author FONTAINE Julie
+ * @author ABATI Mathieu
+ */
+
+/**
+ * Comoving distances table (see ComovingDistTable): the error bound is verified,
+ * interpolated distances agree with the adaptive integral, a tighter bound gives
+ * a more accurate table, and tables are reused only for the same constants.
+ */
+final class ComovingDistTableCheck
+{
+    private static final double Z_MAX = 5;
+
+    // cosmological constants { lambda, omega, kappa, alpha }, for each curvature
+    private static final double[][] CONSTANTS = {
+        { 0.5d, 0.3d, -0.19995d, 0.00005d },
+        { 1.2d, 0.2d, 0.40005d, 0.00005d },
+        { 0.7d, 0.29995d, 0.0d, 0.00005d } };
+
+    private ComovingDistTableCheck() {}
+
+    static void run() throws Exception
+    {
+        for(int c=0; c<CONSTANTS.length; c++)
+        {
+            double[] k = CONSTANTS[c];
+            CosmologySnapshot fast = new CosmologySnapshot(k[0], k[1], k[2], k[3], k[2] == 0,
+                    Environment.PRECISE_TOLERANCE, Environment.DISTANCE_TABLE, Environment.FAST_DISTANCE_ERROR);
+            CosmologySnapshot precise = fast.withDistanceErrorBound(Environment.PRECISE_DISTANCE_ERROR);
+            ComovingDistTable fastTable = ComovingDistTable.build(fast, 1.0d / (1.0d + Z_MAX));
+            ComovingDistTable preciseTable = ComovingDistTable.build(precise, 1.0d / (1.0d + Z_MAX));
+
+            Check.isTrue(fastTable.getMaxError() <= Environment.FAST_DISTANCE_ERROR, "fast table error bound");
+            Check.isTrue(preciseTable.getMaxError() <= Environment.PRECISE_DISTANCE_ERROR, "precise table error bound");
+            Check.isTrue(preciseTable.getNodes() > fastTable.getNodes(), "precise table size");
+
+            // against the adaptive integral (the table integrates with the trapezoid rule)
+            double fastError = 0, preciseError = 0;
+            for(int i=0; i<=1000; i++)
+            {
+                double z = Z_MAX * i / 1000;
+                double ref = fast.comovingDist(z);
+                fastError = Math.max(fastError, Math.abs(fastTable.comovingDist(z) - ref));
+                preciseError = Math.max(preciseError, Math.abs(preciseTable.comovingDist(z) - ref));
+            }
+            Check.isTrue(fastError < 1e-8, "fast table against integral: " + fastError);
+            Check.isTrue(preciseError < 1e-10, "precise table against integral: " + preciseError);
+
+            // out of the table: integrated
+            Check.near(fast.comovingDist(2 * Z_MAX), fastTable.comovingDist(2 * Z_MAX), 0, "out of the table");
+
+            // a table is reused only for the same constants, and a bound at least as large as its own
+            Check.isTrue(!fastTable.matches(fast.withConstants(k[0], k[1] + 0.1d, k[2], k[3]), 0.5d), "table used for other constants");
+            Check.isTrue(preciseTable.matches(fast, 0.5d), "precise table used by fast mode");
+            Check.isTrue(!fastTable.matches(precise, 0.5d), "fast table used by precise mode");
+            Check.isTrue(!fastTable.matches(fast, 0.1d), "table used beyond its redshifts");
+        }
+
+        // all redshifts are 0: a single point table
+        CosmologySnapshot c = new CosmologySnapshot(0.7d, 0.29995d, 0.0d, 0.00005d, true,
+                Environment.FAST_TOLERANCE, Environment.DISTANCE_TABLE, Environment.FAST_DISTANCE_ERROR);
+        Check.near(0, ComovingDistTable.build(c, 1.0d).comovingDist(0), 0, "table for zMax = 0");
+    }
+}
@@ -0,0 +1,104 @@
+/*
+Copyright © 2008 FONTAINE Julie
+Copyright © 2008 ABATI Mathieu
+
+This file is part of Universe Viewer.
+
+Universe Viewer is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 2 of the License, or
+(at your option) any later version.
+
+Universe Viewer is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Universe Viewer; if not, write to the Free Software
+Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+/**
+ * @author FONTAINE Julie
+ * @author ABATI Mathieu
+ */
+
+import java.util.BitSet;
+import java.util.Random;
+
+/**
+ * Density map (see DensityMap): cells hold the points inside their bounds, and the selected
+ * counts, updated from the selection changes only, are always those of a fresh count.
+ */
+final class DensityMapCheck
+{
+    private static final int POINTS = 200000;   // binned in several parts
+    private static final int SIZE = 64;
+    private static final int UPDATES = 60;
+
+    private DensityMapCheck() {}
+
+    static void run() throws Exception
+    {
+        Random r = new Random(13);
+        double[] x = new double[POINTS];
+        double[] y = new double[POINTS];
+        for(int i=0; i<POINTS; i++)
+        {
+            x[i] = r.nextGaussian();
+            y[i] = r.nextGaussian() * 0.5d;
+        }
+        x[3] = Double.NaN;
+        y[4] = Double.NEGATIVE_INFINITY;
+        DensityMap map = new DensityMap(x, y, POINTS, SIZE);
+
+        // binning
+        int[] counts = new int[SIZE * SIZE];
+        double w = (map.getMaxX() - map.getMinX()) / SIZE, h = (map.getMaxY() - map.getMinY()) / SIZE;
+        for(int i=0; i<POINTS; i++)
+        {
+            int c = map.getCell(i);
+            Check.isTrue((c >= 0) == ((i != 3) && (i != 4)), "point " + i + ": cell " + c);
+            if(c < 0)
+                continue;
+            counts[c]++;
+            double cx = map.getMinX() + (c % SIZE) * w, cy = map.getMinY() + (c / SIZE) * h;
+            Check.isTrue((x[i] >= cx - 1e-12) && (x[i] <= cx + w + 1e-12)
+                    && (y[i] >= cy - 1e-12) && (y[i] <= cy + h + 1e-12), "point " + i + " out of its cell");
+        }
+        for(int c=0; c<SIZE*SIZE; c++)
+            Check.isTrue(map.getCount(c) == counts[c], "cell " + c + " count");
+
+        // selection changes: ranges toggled, all selected, none selected, invalid points and
+        // indexes beyond the points
+        BitSet selection = new BitSet();
+        long stamp = 0;
+        for(int u=0; u<UPDATES; u++)
+        {
+            if(u % 20 == 10)
+                selection.set(0, POINTS + 10);
+            else if(u % 20 == 19)
+                selection.clear();
+            else
+            {
+                int from = r.nextInt(POINTS);
+                selection.flip(from, Math.min(POINTS + 5, from + 1 + r.nextInt(POINTS / 4)));
+                selection.flip(r.nextInt(POINTS));
+                selection.set(3);
+            }
+            Check.isTrue(map.updateSelection(selection, ++stamp), "update " + u + ": changes not counted");
+            int[] selected = new int[SIZE * SIZE];
+            for(int i=selection.nextSetBit(0); (i >= 0) && (i < POINTS); i=selection.nextSetBit(i+1))
+                if(map.getCell(i) >= 0)
+                    selected[map.getCell(i)]++;
+            for(int c=0; c<SIZE*SIZE; c++)
+                Check.isTrue(map.getSelectedCount(c) == selected[c], "update " + u + ": cell " + c + " selected count");
+        }
+
+        // unchanged selection, then same stamp: the selection is not visited again
+        Check.isTrue(!map.updateSelection(selection, ++stamp), "unchanged selection counted again");
+        selection.set(0, POINTS);
+        Check.isTrue(!map.updateSelection(selection, stamp), "selection counted with an unchanged stamp");
+    }
+}
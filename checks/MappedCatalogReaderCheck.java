@@ -0,0 +1,187 @@
+/*
+Copyright © 2008 FONTAINE Julie
+Copyright © 2008 ABATI Mathieu
+
+This file is part of Universe Viewer.
+
+Universe Viewer is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 2 of the License, or
+(at your option) any later version.
+
+Universe Viewer is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Universe Viewer; if not, write to the Free Software
+Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+/**
+ * @author FONTAINE Julie
+ * @author ABATI Mathieu
+ */
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Registry file parser (see MappedCatalogReader): every value, whether parsed by the fast
+ * path or by Double.parseDouble, is the double Double.parseDouble gives for its text,
+ * and a file split into several ranges gives the same catalog as a single range.
+ */
+final class MappedCatalogReaderCheck
+{
+    // numbers written as is in the file
+    private static final String[] TOKENS = {
+        "0", "-0", "+1", "1.", ".5", "0.1", "3.14159265358979", "-2.718281828459045",
+        "123456789012345678", "1234567890123456789", "0.000000000000000000001234",
+        "9007199254740993", "1e22", "1e23", "1E-22", "1e-23", "2.5e+3", "-7.25E-4",
+        "1.7976931348623157e308", "4.9e-324", "NaN", "Infinity", "-Infinity", "0x1.8p1",
+        "00012.5000", "1.00000000000000000001" };
+
+    private static final int RANDOM_LINES = 20000;
+    private static final int RANGE_LINES = 300;
+    private static final int MAX_SHIFT = 80;   // longer than a line
+
+    private MappedCatalogReaderCheck() {}
+
+    static void run() throws Exception
+    {
+        Random r = new Random(11);
+        StringBuilder text = new StringBuilder();
+        int lines = 0;
+        for(int i=0; i<TOKENS.length; i++, lines++)
+            text.append(TOKENS[i]).append(' ').append(TOKENS[(i + 1) % TOKENS.length]).append('\t')
+                .append(TOKENS[(i + 2) % TOKENS.length]).append(" ignored\r\n");
+        text.append("\n   \n");
+        for(int i=0; i<RANDOM_LINES; i++, lines++)
+        {
+            // usual registry values, with up to 17 digits
+            text.append(r.nextDouble() * 24).append(' ')
+                .append(String.format(Locale.ROOT, "%.6f", (r.nextDouble() - 0.5d) * 180)).append(' ')
+                .append(Double.toString(r.nextDouble() * 5)).append('\n');
+        }
+
+        File file = File.createTempFile("registry", ".txt");
+        try
+        {
+            write(file, text.toString());
+            QuasarCatalog q = new MappedCatalogReader(file.getPath()).read();
+            Check.isTrue(q.size() == lines, "quasars count: " + q.size());
+
+            String[] expected = text.toString().trim().split("\\s*\n\\s*");
+            int row = 0;
+            for(int l=0; l<expected.length; l++)
+            {
+                String[] values = expected[l].trim().split("[ \t]+");
+                if(values[0].length() == 0)
+                    continue;
+                same(values[0], q.getAscensionColumn()[row], row);
+                same(values[1], q.getDeclinationColumn()[row], row);
+                same(values[2], q.getRedshiftColumn()[row], row);
+                row++;
+            }
+
+            // incorrect lines
+            write(file, "1 2 3\n4 5\n");
+            failure(file, "missing value");
+            write(file, "1 2 3\n4 5 x\n");
+            failure(file, "incorrect value");
+
+            ranges(file, r);
+        }
+        finally
+        {
+            file.delete();
+        }
+    }
+
+    /**
+     * Read files split into small ranges, and into a single range: blanks added at the start
+     * move the range boundaries through every position of the lines
+     */
+    private static void ranges(File file, Random r) throws Exception
+    {
+        StringBuilder lines = new StringBuilder();
+        for(int i=0; i<RANGE_LINES; i++)
+        {
+            lines.append(r.nextDouble() * 24).append(' ').append((r.nextDouble() - 0.5d) * 180).append('\t')
+                .append(r.nextDouble() * 5);
+            if(i % 7 == 0)
+                lines.append(" ignored");
+            lines.append((i % 5 == 0) ? "\r\n" : "\n");
+            if(i % 11 == 0)
+                lines.append("  \n");
+        }
+
+        StringBuilder text = new StringBuilder(lines);
+        for(int shift=0; shift<MAX_SHIFT; shift++)
+        {
+            // odd shifts: last line without line feed
+            write(file, (shift % 2 == 0) ? text.toString() : text.toString().trim());
+            QuasarCatalog single = new MappedCatalogReader(file.getPath(), Integer.MAX_VALUE).read();
+            QuasarCatalog split = new MappedCatalogReader(file.getPath(), 1).read();
+            Check.isTrue(single.size() == RANGE_LINES, "single range count: " + single.size());
+            Check.isTrue(split.size() == RANGE_LINES, "shift " + shift + ": quasars count " + split.size());
+            for(int i=0; i<RANGE_LINES; i++)
+            {
+                Check.isTrue((Double.doubleToLongBits(split.getAscensionColumn()[i]) == Double.doubleToLongBits(single.getAscensionColumn()[i]))
+                        && (Double.doubleToLongBits(split.getDeclinationColumn()[i]) == Double.doubleToLongBits(single.getDeclinationColumn()[i]))
+                        && (Double.doubleToLongBits(split.getRedshiftColumn()[i]) == Double.doubleToLongBits(single.getRedshiftColumn()[i])),
+                        "shift " + shift + ": row " + i + " differs from a single range read");
+            }
+            text.insert(0, ' ');
+        }
+
+        // the line number of an error is the same
+        write(file, lines + "1 2\n" + lines);
+        String expected = failure(new MappedCatalogReader(file.getPath(), Integer.MAX_VALUE), "single range");
+        String found = failure(new MappedCatalogReader(file.getPath(), 1), "ranges");
+        Check.isTrue(expected.equals(found), "error \"" + found + "\", expected \"" + expected + "\"");
+    }
+
+    private static void same(String token, double value, int row) throws Exception
+    {
+        double expected = Double.parseDouble(token);
+        Check.isTrue(Double.doubleToLongBits(expected) == Double.doubleToLongBits(value),
+                "row " + row + ": " + token + " parsed as " + value + ", expected " + expected);
+    }
+
+    private static void failure(File file, String message) throws Exception
+    {
+        failure(new MappedCatalogReader(file.getPath()), message);
+    }
+
+    private static String failure(MappedCatalogReader reader, String message) throws Exception
+    {
+        try
+        {
+            reader.read();
+        }
+        catch(IOException e)
+        {
+            return e.getMessage();
+        }
+        throw new Exception(message + ": no error");
+    }
+
+    private static void write(File file, String text) throws IOException
+    {
+        FileOutputStream out = new FileOutputStream(file);
+        try
+        {
+            out.write(text.getBytes(StandardCharsets.US_ASCII));
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+}
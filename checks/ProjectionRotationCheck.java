@@ -0,0 +1,89 @@
+/*
+Copyright © 2008 FONTAINE Julie
+Copyright © 2008 ABATI Mathieu
+
+This file is part of Universe Viewer.
+
+Universe Viewer is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 2 of the License, or
+(at your option) any later version.
+
+Universe Viewer is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Universe Viewer; if not, write to the Free Software
+Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+/**
+ * @author FONTAINE Julie
+ * @author ABATI Mathieu
+ */
+
+import java.util.Random;
+
+/**
+ * Beta rotations of the projections (see ComputeEngine.neededStages): after many Beta
+ * steps, rotated projections stay within 1e-12 (relative to the largest projection) of
+ * projections computed again from the positions, and are computed again every
+ * MAX_ROTATIONS rotations.
+ */
+final class ProjectionRotationCheck
+{
+    private static final int QUASARS = 20000;
+    private static final int STEPS = 100;   // several times MAX_ROTATIONS
+    private static final double BETA_STEP = 0.37d;
+    private static final double TOLERANCE = 1e-12;
+
+    private ProjectionRotationCheck() {}
+
+    static void run() throws Exception
+    {
+        Environment.initCalculations();
+        CosmologySnapshot c = Environment.getCosmology();
+        QuasarCatalog q = catalog();
+        QuasarCatalog fresh = catalog();
+        ViewSnapshot v = new ViewSnapshot(1, 0.7d, 0.3d, 0.1d);
+        ComputeEngine.compute(q, ComputeEngine.STAGE_ALL, c, v, null);
+
+        int anchors = 0;
+        for(int s=1; s<=STEPS; s++)
+        {
+            v = v.withBeta(v.getBeta() + BETA_STEP);
+            int stages = ComputeEngine.neededStages(q, ComputeEngine.STAGE_PROJ, v);
+            if(stages != ComputeEngine.STAGE_ROTATE)
+            {
+                Check.isTrue((stages == ComputeEngine.STAGE_PROJ) && (q.getProjectionRotations() == ComputeEngine.MAX_ROTATIONS),
+                        "step " + s + ": projections computed again after " + q.getProjectionRotations() + " rotations");
+                anchors++;
+            }
+            ComputeEngine.compute(q, ComputeEngine.STAGE_PROJ, c, v, null);
+
+            ComputeEngine.compute(fresh, ComputeEngine.STAGE_ALL, c, v, null);
+            for(int k=1; k<=3; k++)
+            {
+                double[] expected = fresh.getProjColumn(k);
+                double[] found = q.getProjColumn(k);
+                double max = 0;
+                for(int i=0; i<QUASARS; i++)
+                    max = Math.max(max, Math.abs(expected[i]));
+                for(int i=0; i<QUASARS; i++)
+                    Check.near(expected[i], found[i], TOLERANCE * max, "step " + s + ": projection on E" + k + " of quasar " + i);
+            }
+        }
+        Check.isTrue(anchors == STEPS / (ComputeEngine.MAX_ROTATIONS + 1), "projections computed again " + anchors + " times");
+    }
+
+    private static QuasarCatalog catalog()
+    {
+        Random r = new Random(3);
+        QuasarCatalog q = new QuasarCatalog(QUASARS);
+        for(int i=0; i<QUASARS; i++)
+            q.add(r.nextDouble() * 2 * Math.PI, (r.nextDouble() - 0.5d) * Math.PI, r.nextDouble() * 5);
+        return q;
+    }
+}
@@ -0,0 +1,66 @@
+/*
+Copyright © 2008 FONTAINE Julie
+Copyright © 2008 ABATI Mathieu
+
+This file is part of Universe Viewer.
+
+Universe Viewer is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 2 of the License, or
+(at your option) any later version.
+
+Universe Viewer is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Universe Viewer; if not, write to the Free Software
+Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+/**
+ * @author FONTAINE Julie
+ * @author ABATI Mathieu
+ */
+
+import java.lang.reflect.InvocationTargetException;
+
+/**
+ * Run all the checks, and exit with status 1 if one of them fails.
+ * Each check is a class with a static run method, throwing an exception on failure.
+ */
+final class RunChecks
+{
+    private static final String[] CHECKS = {
+        "ComovingDistTableCheck",
+        "AdaptiveIntegralCheck",
+        "SortedDistanceCheck",
+        "SpatialGridCheck",
+        "MappedCatalogReaderCheck",
+        "BinaryCatalogCheck",
+        "ProjectionRotationCheck",
+        "DensityMapCheck" };
+
+    private RunChecks() {}
+
+    public static void main(String[] args) throws Exception
+    {
+        boolean failed = false;
+        for(int k=0; k<CHECKS.length; k++)
+        {
+            try
+            {
+                Class.forName(CHECKS[k]).getDeclaredMethod("run").invoke(null);
+                System.out.println(CHECKS[k] + ": ok");
+            }
+            catch(InvocationTargetException e)
+            {
+                System.out.println(CHECKS[k] + ": FAILED, " + e.getCause());
+                failed = true;
+            }
+        }
+        if(failed)
+            System.exit(1);
+    }
+}
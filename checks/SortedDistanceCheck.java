@@ -0,0 +1,105 @@
+/*
+Copyright © 2008 FONTAINE Julie
+Copyright © 2008 ABATI Mathieu
+
+This file is part of Universe Viewer.
+
+Universe Viewer is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 2 of the License, or
+(at your option) any later version.
+
+Universe Viewer is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Universe Viewer; if not, write to the Free Software
+Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+/**
+ * @author FONTAINE Julie
+ * @author ABATI Mathieu
+ */
+
+import java.util.Random;
+
+/**
+ * Comoving distances computed in redshift order (DISTANCE_SORTED): for each curvature,
+ * with duplicated and zero redshifts, distances are within the integration tolerance
+ * (FAST_TOLERANCE or PRECISE_TOLERANCE) of the adaptive integral of each quasar.
+ */
+final class SortedDistanceCheck
+{
+    private static final int QUASARS = 5000;
+
+    // cosmological constants { lambda, omega, kappa, alpha }, for each curvature
+    private static final double[][] CONSTANTS = {
+        { 0.5d, 0.3d, -0.19995d, 0.00005d },
+        { 1.2d, 0.2d, 0.40005d, 0.00005d },
+        { 0.7d, 0.29995d, 0.0d, 0.00005d } };
+
+    private SortedDistanceCheck() {}
+
+    static void run() throws Exception
+    {
+        Random r = new Random(17);
+        QuasarCatalog q = new QuasarCatalog(QUASARS);
+        for(int i=0; i<QUASARS; i++)
+        {
+            double z = r.nextDouble() * 5;
+            if(i % 10 == 0)
+                z = 0;
+            else if(i % 10 == 1)
+                z = q.getRedshiftColumn()[i / 2];   // same redshift as another quasar
+            q.add(r.nextDouble() * 2 * Math.PI, (r.nextDouble() - 0.5d) * Math.PI, z);
+        }
+        double[] redshift = q.getRedshiftColumn();
+
+        ViewSnapshot view = new ViewSnapshot(1, 0.0d, 0.0d, 0.0d);     // projections are not computed
+        double[] tolerances = { Environment.FAST_TOLERANCE, Environment.PRECISE_TOLERANCE };
+        for(int c=0; c<CONSTANTS.length; c++)
+        {
+            double[] k = CONSTANTS[c];
+            for(int t=0; t<tolerances.length; t++)
+            {
+                double tol = tolerances[t];
+                CosmologySnapshot cosmology = new CosmologySnapshot(k[0], k[1], k[2], k[3], k[2] == 0,
+                        tol, Environment.DISTANCE_SORTED, Environment.FAST_DISTANCE_ERROR);
+                ComputeEngine.compute(q, ComputeEngine.STAGE_DIST | ComputeEngine.STAGE_POS, cosmology, view, null);
+                AdaptiveIntegral f = new AdaptiveIntegral(k[0], k[1], k[2], k[3]);
+                double[] found = comovingDist(q, k[2]);
+                for(int i=0; i<QUASARS; i++)
+                {
+                    String message = "kappa = " + k[2] + ", tolerance " + tol + ", z = " + redshift[i];
+                    if(redshift[i] == 0)
+                        Check.near(0, found[i], 0, message);
+                    else
+                        Check.near(f.value(1.0d / (1.0d + redshift[i]), 1.0d, tol), found[i], tol, message);
+                    if(i % 10 == 1)     // same distance (norms of positions are rounded)
+                        Check.near(found[i / 2], found[i], (k[2] == 0) ? 1e-14 : 0, message + ": duplicated redshift");
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the comoving distances from the angular distances, or from the positions in
+     * comoving space if kappa = 0
+     */
+    private static double[] comovingDist(QuasarCatalog q, double kappa)
+    {
+        double[] d = new double[q.size()];
+        for(int i=0; i<d.length; i++)
+        {
+            if(kappa == 0)
+                d[i] = Math.sqrt(q.getPosXColumn()[i] * q.getPosXColumn()[i] + q.getPosYColumn()[i] * q.getPosYColumn()[i]
+                        + q.getPosZColumn()[i] * q.getPosZColumn()[i]);
+            else
+                d[i] = q.getAngularDistColumn()[i] / Math.sqrt(Math.abs(kappa));
+        }
+        return d;
+    }
+}
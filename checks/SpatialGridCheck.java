@@ -0,0 +1,96 @@
+/*
+Copyright © 2008 FONTAINE Julie
+Copyright © 2008 ABATI Mathieu
+
+This file is part of Universe Viewer.
+
+Universe Viewer is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 2 of the License, or
+(at your option) any later version.
+
+Universe Viewer is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Universe Viewer; if not, write to the Free Software
+Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+/**
+ * @author FONTAINE Julie
+ * @author ABATI Mathieu
+ */
+
+import java.util.BitSet;
+import java.util.Random;
+
+/**
+ * Spatial index (see SpatialGrid): rectangle queries find exactly the points a scan of
+ * all the points finds, including points with invalid coordinates and empty rectangles.
+ */
+final class SpatialGridCheck
+{
+    private static final int POINTS = 100000;
+    private static final int QUERIES = 500;
+
+    private SpatialGridCheck() {}
+
+    static void run() throws Exception
+    {
+        Random r = new Random(7);
+        double[] x = new double[POINTS];
+        double[] y = new double[POINTS];
+        for(int i=0; i<POINTS; i++)
+        {
+            // clustered points, with a few duplicates and invalid coordinates
+            x[i] = r.nextGaussian();
+            y[i] = (i % 2 == 0) ? r.nextGaussian() * 0.1d : r.nextDouble() * 4 - 2;
+            if(i % 1000 == 1)
+            {
+                x[i] = x[i-1];
+                y[i] = y[i-1];
+            }
+        }
+        x[10] = Double.NaN;
+        y[20] = Double.POSITIVE_INFINITY;
+        SpatialGrid grid = new SpatialGrid(x, y, POINTS);
+
+        for(int q=0; q<QUERIES; q++)
+        {
+            double x1 = r.nextDouble() * 8 - 4, x2 = x1 + r.nextDouble() * ((q % 10 == 0) ? 8 : 0.5d);
+            double y1 = r.nextDouble() * 6 - 3, y2 = y1 + r.nextDouble() * ((q % 10 == 0) ? 6 : 0.5d);
+            if(q % 50 == 0)     // empty rectangle
+                x2 = x1;
+            BitSet expected = new BitSet(POINTS);
+            for(int i=0; i<POINTS; i++)
+                if((x[i] > x1) && (x[i] < x2) && (y[i] > y1) && (y[i] < y2))
+                    expected.set(i);
+
+            BitSet found = new BitSet(POINTS);
+            found.set(POINTS);  // bits already set are kept
+            int count = grid.query(x1, x2, y1, y2, found);
+            Check.isTrue(found.get(POINTS), "query cleared a bit");
+            found.clear(POINTS);
+            Check.isTrue(found.equals(expected), "query " + q + ": points found differ from a full scan");
+            Check.isTrue(count == expected.cardinality(), "query " + q + ": count");
+
+            // ranges of the intersecting cells hold all the points of the rectangle
+            int[] starts = new int[grid.getGridRows()];
+            int[] counts = new int[grid.getGridRows()];
+            int ranges = grid.getRanges(x1, x2, y1, y2, starts, counts);
+            BitSet inRanges = new BitSet(POINTS);
+            for(int k=0; k<ranges; k++)
+                for(int j=starts[k]; j<starts[k] + counts[k]; j++)
+                    inRanges.set(grid.getRows()[j]);
+            expected.andNot(inRanges);
+            Check.isTrue(expected.isEmpty(), "query " + q + ": points missing from the ranges");
+        }
+
+        // empty grid
+        BitSet none = new BitSet();
+        Check.isTrue(new SpatialGrid(new double[0], new double[0], 0).query(-1, 1, -1, 1, none) == 0, "empty grid");
+    }
+}
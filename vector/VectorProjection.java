@@ -0,0 +1,68 @@
+/*
+Copyright © 2008 FONTAINE Julie
+Copyright © 2008 ABATI Mathieu
+
+This file is part of Universe Viewer.
+
+Universe Viewer is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 2 of the License, or
+(at your option) any later version.
+
+Universe Viewer is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Universe Viewer; if not, write to the Free Software
+Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+/**
+ * @author FONTAINE Julie
+ * @author ABATI Mathieu
+ */
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Projection kernel using the JDK Vector API: a whole lane of quasars is projected
+ * at once. Compiled and run with "--add-modules jdk.incubator.vector", and loaded by
+ * ProjectionKernel only if available. Products and sums are done in the same order as
+ * the scalar loop (no fused multiply-add), so results are the same.
+ */
+final class VectorProjection extends ProjectionKernel
+{
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    void project(double[] x, double[] y, double[] z, double[] t, double[] e1, double[] e2, double[] e3,
+            double[] p1, double[] p2, double[] p3, int from, int to)
+    {
+        double e1X = e1[0], e1Y = e1[1], e1Z = e1[2], e1T = e1[3];
+        double e2X = e2[0], e2Y = e2[1], e2Z = e2[2], e2T = e2[3];
+        double e3X = e3[0], e3Y = e3[1], e3Z = e3[2], e3T = e3[3];
+        int i = from;
+        int bound = from + SPECIES.loopBound(to - from);
+        for(; i<bound; i+=SPECIES.length())
+        {
+            DoubleVector xi = DoubleVector.fromArray(SPECIES, x, i);
+            DoubleVector yi = DoubleVector.fromArray(SPECIES, y, i);
+            DoubleVector zi = DoubleVector.fromArray(SPECIES, z, i);
+            DoubleVector ti = DoubleVector.fromArray(SPECIES, t, i);
+            xi.mul(e1X).add(yi.mul(e1Y)).add(zi.mul(e1Z)).add(ti.mul(e1T)).intoArray(p1, i);
+            xi.mul(e2X).add(yi.mul(e2Y)).add(zi.mul(e2Z)).add(ti.mul(e2T)).intoArray(p2, i);
+            xi.mul(e3X).add(yi.mul(e3Y)).add(zi.mul(e3Z)).add(ti.mul(e3T)).intoArray(p3, i);
+        }
+        // remaining quasars (less than a lane)
+        for(; i<to; i++)
+        {
+            p1[i] = x[i]*e1X + y[i]*e1Y + z[i]*e1Z + t[i]*e1T;
+            p2[i] = x[i]*e2X + y[i]*e2Y + z[i]*e2Z + t[i]*e2T;
+            p3[i] = x[i]*e3X + y[i]*e3Y + z[i]*e3Z + t[i]*e3T;
+        }
+    }
+
+    String getName() { return "vector (" + SPECIES.length() + " lanes)"; }
+}